@@ -0,0 +1,43 @@
+package it.ohalee.cerebrum.common.remote;
+
+import java.util.List;
+
+/**
+ * Redisson remote service of Cerebrum for the game services, served by every Cerebrum node.
+ */
+public interface RemoteWorkerService {
+
+    /**
+     * Starts a new instance of a worker with a name unique across the cluster.
+     *
+     * @param template the ranch and the worker, e.g. "bedwars-instance"
+     * @return the allocated server name, e.g. "bedwars-instance-42", or null if the worker does not exist
+     */
+    String createWorker(String template);
+
+    /**
+     * Starts many servers with a single call, retries with the same idempotency key attach to the first one.
+     *
+     * @param names the qualified server names, e.g. "bedwars-lobby-1"
+     * @return the result of every server, in the same order as the names
+     */
+    List<StartResult> createServers(List<String> names, String idempotencyKey);
+
+    /**
+     * Starts a server without waiting for it to load, retries with the same idempotency key attach to the first one.
+     *
+     * @param name the qualified server name, e.g. "bedwars-lobby-1"
+     * @return {@link StartResult.State#ACCEPTED} while the start is in progress, otherwise its final state
+     */
+    StartResult startServer(String name, String idempotencyKey);
+
+    /**
+     * Reads the progress of a {@link #startServer(String, String)}. Starts of a worker without an instance name, e.g.
+     * "bedwars-instance", can only be found by their idempotency key.
+     *
+     * @return {@link StartResult.State#ACCEPTED} while the start is in progress, {@link StartResult.State#FORWARDED}
+     * if the server is managed by another node, otherwise the final state of the start
+     */
+    StartResult getStart(String name, String idempotencyKey);
+
+}
@@ -0,0 +1,81 @@
+package it.ohalee.cerebrum.common.remote;
+
+import java.io.Serializable;
+
+/**
+ * Result of a start requested through the {@link RemoteWorkerService}.
+ */
+public class StartResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String server;
+    private String containerId;
+    private State state;
+    private String error;
+
+    public StartResult() {
+    }
+
+    public StartResult(String server, String containerId, State state, String error) {
+        this.server = server;
+        this.containerId = containerId;
+        this.state = state;
+        this.error = error;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * @return the id of the Docker container, null if the server was not created by the node that answered
+     */
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return why the start failed, null on success
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return server + " " + state + (error == null ? "" : " (" + error + ")");
+    }
+
+    public enum State {
+        /**
+         * The start has been queued on the Cerebrum node managing the server.
+         */
+        ACCEPTED,
+        /**
+         * The ranch is not managed by the node that received the request, it was sent to the other nodes.
+         */
+        FORWARDED,
+        /**
+         * The server has been reported as loaded.
+         */
+        LOADED,
+        /**
+         * The start could not be performed.
+         */
+        FAILED,
+        /**
+         * The container was started but the server did not load in time.
+         */
+        TIMED_OUT
+    }
+
+}
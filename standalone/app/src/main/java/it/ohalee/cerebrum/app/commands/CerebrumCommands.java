@@ -61,4 +61,16 @@ public class CerebrumCommands {
         return commandExecutor.execute("update", null, null, null);
     }
 
+    @ShellMethod("Shows the metrics of this node")
+    public String metrics(@ShellOption(value = { "-f", "--filter" }, defaultValue = "all") String filter) {
+        return commandExecutor.execute("metrics", filter, null, null);
+    }
+
+    @ShellMethod("Shows CPU, memory, network and disk usage of the containers")
+    public String stats(@ShellOption(value = { "-r", "--ranch" }, valueProvider = TabCompletation.class, defaultValue = "all") String ranch,
+                        @ShellOption(value = { "-s", "--server" }, valueProvider = TabCompletation.class, defaultValue = "all") String server,
+                        @ShellOption(value = { "-d", "--day" }, defaultValue = "false") boolean day) {
+        return commandExecutor.execute("stats", ranch, server, day);
+    }
+
 }
@@ -34,6 +34,16 @@ public class CerebrumScheduler {
         async().execute(runnable);
     }
 
+    public SchedulerTask asyncLater(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> future = this.scheduler.schedule(() -> this.worker.execute(task), delay, unit);
+        return () -> future.cancel(false);
+    }
+
+    public SchedulerTask asyncRepeating(Runnable task, long interval, TimeUnit unit) {
+        ScheduledFuture<?> future = this.scheduler.scheduleAtFixedRate(() -> this.worker.execute(task), interval, interval, unit);
+        return () -> future.cancel(false);
+    }
+
     public void shutdownScheduler() {
         this.scheduler.shutdown();
         try {
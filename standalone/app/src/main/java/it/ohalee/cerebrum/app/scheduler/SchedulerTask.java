@@ -0,0 +1,7 @@
+package it.ohalee.cerebrum.app.scheduler;
+
+public interface SchedulerTask {
+
+    void cancel();
+
+}
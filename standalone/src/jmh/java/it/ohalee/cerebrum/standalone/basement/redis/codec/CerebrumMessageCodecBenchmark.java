@@ -0,0 +1,117 @@
+package it.ohalee.cerebrum.standalone.basement.redis.codec;
+
+import com.google.gson.Gson;
+import it.ohalee.basementlib.api.redis.messages.BasementMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServerMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CerebrumMessageCodec} with the JSON encoding of BasementLib, on single starts and on batch
+ * starts of growing size. The encode benchmarks also report the size of the message as the {@code bytes} counter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CerebrumMessageCodecBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    @State(Scope.Benchmark)
+    public static class Single {
+
+        private StartServerMessage message;
+        private byte[] binary;
+        private byte[] json;
+
+        @Setup
+        public void setUp() {
+            message = new StartServerMessage(UUID.randomUUID(), "bedwars", "lobby-1", UUID.randomUUID().toString());
+            binary = CerebrumMessageCodec.encode(message);
+            json = GSON.toJson(message).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({"1", "16", "256"})
+        private int servers;
+
+        private StartServersMessage message;
+        private byte[] binary;
+        private byte[] json;
+
+        @Setup
+        public void setUp() {
+            List<String> names = new ArrayList<>(servers);
+            for (int i = 0; i < servers; i++)
+                names.add("bedwars-instance-" + i);
+            message = new StartServersMessage(UUID.randomUUID(), names, UUID.randomUUID().toString());
+            binary = CerebrumMessageCodec.encode(message);
+            json = GSON.toJson(message).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+
+        public long bytes;
+    }
+
+    @Benchmark
+    public byte[] encodeSingleBinary(Single single, Size size) {
+        byte[] data = CerebrumMessageCodec.encode(single.message);
+        size.bytes = data.length;
+        return data;
+    }
+
+    @Benchmark
+    public BasementMessage decodeSingleBinary(Single single) throws IOException {
+        return CerebrumMessageCodec.decode(single.binary);
+    }
+
+    @Benchmark
+    public byte[] encodeSingleJson(Single single, Size size) {
+        byte[] data = GSON.toJson(single.message).getBytes(StandardCharsets.UTF_8);
+        size.bytes = data.length;
+        return data;
+    }
+
+    @Benchmark
+    public BasementMessage decodeSingleJson(Single single) {
+        return GSON.fromJson(new String(single.json, StandardCharsets.UTF_8), StartServerMessage.class);
+    }
+
+    @Benchmark
+    public byte[] encodeBatchBinary(Batch batch, Size size) {
+        byte[] data = CerebrumMessageCodec.encode(batch.message);
+        size.bytes = data.length;
+        return data;
+    }
+
+    @Benchmark
+    public BasementMessage decodeBatchBinary(Batch batch) throws IOException {
+        return CerebrumMessageCodec.decode(batch.binary);
+    }
+
+    @Benchmark
+    public byte[] encodeBatchJson(Batch batch, Size size) {
+        byte[] data = GSON.toJson(batch.message).getBytes(StandardCharsets.UTF_8);
+        size.bytes = data.length;
+        return data;
+    }
+
+    @Benchmark
+    public BasementMessage decodeBatchJson(Batch batch) {
+        return GSON.fromJson(new String(batch.json, StandardCharsets.UTF_8), StartServersMessage.class);
+    }
+
+}
@@ -51,7 +51,7 @@ public class CerebrumBootstrap implements LoaderBootstrap {
         CerebrumConfigAdapter share = (CerebrumConfigAdapter) loader.getBasement().plugin()
                 .provideConfigurationAdapter(CerebrumBootstrap.class, dir.resolve("share.yml").toFile(), true);
 
-        DockerService dockerService = new DockerService(settings, share);
+        DockerService dockerService = new DockerService(scheduler, settings, share);
         new BasementService(loader, dockerService);
 
         StandaloneCommandManager commandManager = new StandaloneCommandManager(dockerService);
@@ -25,6 +25,15 @@ public class BasementService {
         });
     }
 
+    /**
+     * @param serverName the name of the server as registered to BasementLib
+     * @return the players of the server, empty if BasementLib does not know it
+     */
+    public static Optional<PlayerCount> playerCount(String serverName) {
+        return BasementLoader.get().serverManager().getServer(serverName)
+                .map(server -> new PlayerCount(server.getOnline(), server.getMax()));
+    }
+
     private void set(BukkitServer server, TriConsumer<String, String, Boolean> consumer, boolean status) {
         String ranchName = server.getName().split("-")[0];
         Optional<Ranch> optionalRanch = dockerService.getRanch(ranchName);
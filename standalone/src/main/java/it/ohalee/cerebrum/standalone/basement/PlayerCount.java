@@ -0,0 +1,17 @@
+package it.ohalee.cerebrum.standalone.basement;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class PlayerCount {
+
+    private final int online;
+    private final int max;
+
+    public int getFree() {
+        return Math.max(0, max - online);
+    }
+
+}
@@ -0,0 +1,104 @@
+package it.ohalee.cerebrum.standalone.basement.redis;
+
+import it.ohalee.basementlib.api.redis.RedisManager;
+import it.ohalee.basementlib.api.redis.messages.BasementMessage;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.basement.redis.codec.CerebrumMessageCodec;
+import it.ohalee.cerebrum.standalone.basement.redis.handlers.StartServerHandler;
+import it.ohalee.cerebrum.standalone.basement.redis.handlers.StartServersHandler;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServerMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import org.redisson.api.RTopic;
+import org.redisson.client.codec.ByteArrayCodec;
+
+import java.io.IOException;
+
+/**
+ * Exchanges the messages of the Cerebrum nodes.
+ * <p>
+ * With {@code codec: basement}, the default, they go through BasementLib as before, which every node understands.
+ * With {@code codec: binary} they are sent on a raw topic with the {@link CerebrumMessageCodec}, and the messages of
+ * this node are dropped before being decoded; it is only to be enabled once no node of an older version is left, as
+ * those do not listen on that topic. Both are always received.
+ */
+public class CerebrumMessenger {
+
+    public static final String TOPIC = "cerebrum:messages";
+
+    private final boolean binary;
+    private final StartServerHandler startServerHandler;
+    private final StartServersHandler startServersHandler;
+    private final Counter sent;
+    private final Counter received;
+    private final Counter dropped;
+    private RedisManager redisManager;
+    private RTopic topic;
+    private int listenerId = -1;
+
+    public CerebrumMessenger(CerebrumConfigurationNode section, MetricsRegistry metrics, DockerService dockerService) {
+        this.binary = "binary".equalsIgnoreCase(section.getString("codec", "basement"));
+        this.startServerHandler = new StartServerHandler(dockerService);
+        this.startServersHandler = new StartServersHandler(dockerService);
+        this.sent = metrics.counter("messages.sent");
+        this.received = metrics.counter("messages.received");
+        this.dropped = metrics.counter("messages.dropped");
+    }
+
+    public void start(RedisManager redisManager) {
+        this.redisManager = redisManager;
+        redisManager.registerTopicListener(StartServerMessage.TOPIC, startServerHandler);
+        redisManager.registerTopicListener(StartServersMessage.TOPIC, startServersHandler);
+
+        topic = redisManager.redissonClient().getTopic(TOPIC, ByteArrayCodec.INSTANCE);
+        listenerId = topic.addListener(byte[].class, (channel, data) -> receive(data));
+    }
+
+    public void close() {
+        if (topic != null && listenerId != -1)
+            topic.removeListener(listenerId);
+    }
+
+    public void publish(StartServerMessage message) {
+        sent.increment();
+        if (binary)
+            topic.publish(CerebrumMessageCodec.encode(message));
+        else
+            redisManager.publishMessage(message);
+    }
+
+    public void publish(StartServersMessage message) {
+        sent.increment();
+        if (binary)
+            topic.publish(CerebrumMessageCodec.encode(message));
+        else
+            redisManager.publishMessage(message);
+    }
+
+    private void receive(byte[] data) {
+        if (!CerebrumMessageCodec.isSupported(data)) {
+            dropped.increment();
+            Logger.warn("Dropped a Cerebrum message of an unsupported version, are all nodes up to date?");
+            return;
+        }
+        if (CerebrumMessageCodec.isFrom(data, DockerService.uuid)) return;
+
+        BasementMessage message;
+        try {
+            message = CerebrumMessageCodec.decode(data);
+        } catch (IOException | RuntimeException e) {
+            dropped.increment();
+            Logger.warn("Dropped a Cerebrum message that could not be decoded", e);
+            return;
+        }
+
+        received.increment();
+        if (message instanceof StartServerMessage startServer)
+            startServerHandler.execute(startServer);
+        else if (message instanceof StartServersMessage startServers)
+            startServersHandler.execute(startServers);
+    }
+}
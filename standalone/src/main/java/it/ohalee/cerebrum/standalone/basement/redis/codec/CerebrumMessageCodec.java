@@ -0,0 +1,114 @@
+package it.ohalee.cerebrum.standalone.basement.redis.codec;
+
+import it.ohalee.basementlib.api.redis.messages.BasementMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServerMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the messages exchanged by the Cerebrum nodes.
+ * <p>
+ * A message starts with a fixed header: the format version (1 byte), the id of the sending node (16 bytes) and the
+ * message type (1 byte), so that a node can drop its own messages and unknown versions by looking at the header only.
+ * Strings are written as modified UTF-8, nullable ones behind a presence flag.
+ */
+public final class CerebrumMessageCodec {
+
+    public static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 18;
+    private static final byte START_SERVER = 1;
+    private static final byte START_SERVERS = 2;
+
+    private CerebrumMessageCodec() {
+    }
+
+    public static byte[] encode(StartServerMessage message) {
+        return encode(message.getUuid(), START_SERVER, out -> {
+            out.writeUTF(message.getRanchName());
+            out.writeUTF(message.getServerName());
+            writeNullable(out, message.getIdempotencyKey());
+        });
+    }
+
+    public static byte[] encode(StartServersMessage message) {
+        return encode(message.getUuid(), START_SERVERS, out -> {
+            out.writeInt(message.getServers().size());
+            for (String server : message.getServers())
+                out.writeUTF(server);
+            writeNullable(out, message.getIdempotencyKey());
+        });
+    }
+
+    /**
+     * Reads the header only.
+     */
+    public static boolean isSupported(byte[] data) {
+        return data.length >= HEADER_SIZE && data[0] == VERSION;
+    }
+
+    /**
+     * Reads the header only, the message must be {@link #isSupported(byte[]) supported}.
+     */
+    public static boolean isFrom(byte[] data, UUID sender) {
+        ByteBuffer header = ByteBuffer.wrap(data, 1, 16);
+        return header.getLong() == sender.getMostSignificantBits() && header.getLong() == sender.getLeastSignificantBits();
+    }
+
+    public static BasementMessage decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION)
+                throw new IOException("Unsupported message version " + version);
+            UUID sender = new UUID(in.readLong(), in.readLong());
+            byte type = in.readByte();
+            return switch (type) {
+                case START_SERVER -> new StartServerMessage(sender, in.readUTF(), in.readUTF(), readNullable(in));
+                case START_SERVERS -> {
+                    int size = in.readInt();
+                    // Every server takes at least its 2 bytes of length, a corrupt size must not allocate a huge list
+                    if (size < 0 || size > in.available() / 2)
+                        throw new IOException("Invalid server count " + size);
+                    List<String> servers = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++)
+                        servers.add(in.readUTF());
+                    yield new StartServersMessage(sender, servers, readNullable(in));
+                }
+                default -> throw new IOException("Unknown message type " + type);
+            };
+        }
+    }
+
+    private static byte[] encode(UUID sender, byte type, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(sender.getMostSignificantBits());
+            out.writeLong(sender.getLeastSignificantBits());
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
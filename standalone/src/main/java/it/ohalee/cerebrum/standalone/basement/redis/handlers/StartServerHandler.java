@@ -13,7 +13,7 @@ public class StartServerHandler implements BasementMessageHandler<StartServerMes
     @Override
     public void execute(StartServerMessage message) {
         if (message.getUuid().equals(DockerService.uuid)) return;
-        dockerService.startServer(message.getRanchName(), message.getServerName(), false);
+        dockerService.startAsync(message.getRanchName(), message.getServerName(), false, message.getIdempotencyKey());
     }
 
     @Override
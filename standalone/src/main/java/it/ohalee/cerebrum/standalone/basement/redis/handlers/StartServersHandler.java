@@ -0,0 +1,23 @@
+package it.ohalee.cerebrum.standalone.basement.redis.handlers;
+
+import it.ohalee.basementlib.api.redis.messages.handler.BasementMessageHandler;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class StartServersHandler implements BasementMessageHandler<StartServersMessage> {
+
+    private final DockerService dockerService;
+
+    @Override
+    public void execute(StartServersMessage message) {
+        if (message.getUuid().equals(DockerService.uuid)) return;
+        dockerService.startBatch(message.getServers(), false, message.getIdempotencyKey());
+    }
+
+    @Override
+    public Class<StartServersMessage> getCommandClass() {
+        return StartServersMessage.class;
+    }
+}
@@ -13,18 +13,21 @@ public class StartServerMessage extends BasementMessage {
     private final UUID uuid;
     private final String ranchName;
     private final String serverName;
+    private final String idempotencyKey;
 
     public StartServerMessage() {
         super(TOPIC);
         this.uuid = null;
         this.ranchName = null;
         this.serverName = null;
+        this.idempotencyKey = null;
     }
 
-    public StartServerMessage(UUID uuid, String ranchName, String serverName) {
+    public StartServerMessage(UUID uuid, String ranchName, String serverName, String idempotencyKey) {
         super(TOPIC);
         this.uuid = uuid;
         this.ranchName = ranchName;
         this.serverName = serverName;
+        this.idempotencyKey = idempotencyKey;
     }
 }
@@ -0,0 +1,34 @@
+package it.ohalee.cerebrum.standalone.basement.redis.message;
+
+import it.ohalee.basementlib.api.redis.messages.BasementMessage;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Batch of {@link StartServerMessage}, the servers are qualified with their ranch, e.g. "bedwars-lobby-1".
+ */
+@Getter
+public class StartServersMessage extends BasementMessage {
+
+    public static final String TOPIC = "cerebrum-start-servers";
+
+    private final UUID uuid;
+    private final List<String> servers;
+    private final String idempotencyKey;
+
+    public StartServersMessage() {
+        super(TOPIC);
+        this.uuid = null;
+        this.servers = null;
+        this.idempotencyKey = null;
+    }
+
+    public StartServersMessage(UUID uuid, List<String> servers, String idempotencyKey) {
+        super(TOPIC);
+        this.uuid = uuid;
+        this.servers = servers;
+        this.idempotencyKey = idempotencyKey;
+    }
+}
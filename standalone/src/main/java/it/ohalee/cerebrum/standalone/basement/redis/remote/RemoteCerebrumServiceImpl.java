@@ -1,6 +1,8 @@
 package it.ohalee.cerebrum.standalone.basement.redis.remote;
 
 import it.ohalee.basementlib.api.remote.RemoteCerebrumService;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.cluster.LeaderElection;
 import it.ohalee.cerebrum.standalone.docker.DockerService;
 import lombok.RequiredArgsConstructor;
 
@@ -8,11 +10,24 @@ import lombok.RequiredArgsConstructor;
 public class RemoteCerebrumServiceImpl implements RemoteCerebrumService {
 
     private final DockerService dockerService;
+    private final LeaderElection election;
+    /**
+     * Fencing token of the leadership this service was registered under
+     */
+    private final long token;
 
     @Override
     public void createServer(String name) {
+        long start = System.nanoTime();
+        // The caller gets no answer, so a start reaching a deposed leader is still handed to the owner of its ranch
+        if (!election.holds(token))
+            Logger.warn("Remote start of " + name + " reached this node after losing the leadership of token " + token + ", passing it on");
         String ranchName = name.split("-")[0];
         String serverName = name.substring(ranchName.length() + 1);
-        dockerService.startServer(ranchName, serverName, true);
+        dockerService.startAsync(ranchName, serverName, true).whenComplete((result, throwable) -> {
+            DockerService.getMetrics().histogram("remote.create-server.latency").recordNanos(start);
+            if (result != null && !result.isSuccess())
+                Logger.warn("Remote start of " + name + " failed: " + result.getError().reason());
+        });
     }
 }
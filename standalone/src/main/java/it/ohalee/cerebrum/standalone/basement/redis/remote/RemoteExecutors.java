@@ -0,0 +1,53 @@
+package it.ohalee.cerebrum.standalone.basement.redis.remote;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the executor the Redisson remote services of Cerebrum run on.
+ */
+public final class RemoteExecutors {
+
+    private RemoteExecutors() {
+    }
+
+    /**
+     * Remote calls mostly wait for Docker and for the servers to load, so with {@code threads: virtual} each call gets
+     * its own virtual thread. Virtual threads need Java 21, older runtimes fall back to {@code workers} platform threads.
+     *
+     * @param section the {@code remote} section of this node
+     */
+    public static ExecutorService create(CerebrumConfigurationNode section) {
+        int workers = workers(section);
+        if ("virtual".equalsIgnoreCase(section.getString("threads", "virtual"))) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Logger.warn("Virtual threads are not available on Java " + Runtime.version().feature() + ", using " + workers + " platform threads for remote calls");
+            }
+        }
+
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "cerebrum-remote-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return how many remote calls each service runs at the same time
+     */
+    public static int workers(CerebrumConfigurationNode section) {
+        return Math.max(1, section.getInteger("workers", 16));
+    }
+}
@@ -0,0 +1,105 @@
+package it.ohalee.cerebrum.standalone.basement.redis.remote;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.common.remote.RemoteWorkerService;
+import it.ohalee.cerebrum.common.remote.StartResult;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.LifecycleResult;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+@RequiredArgsConstructor
+public class RemoteWorkerServiceImpl implements RemoteWorkerService {
+
+    private final DockerService dockerService;
+
+    @Override
+    public String createWorker(String template) {
+        long start = System.nanoTime();
+        int separator = template.indexOf('-');
+        if (separator <= 0 || !dockerService.isWorker(template.substring(0, separator), template.substring(separator + 1))) {
+            Logger.warn("Remote worker creation failed, " + template + " is not a worker.");
+            DockerService.getMetrics().histogram("remote.create-worker.latency").recordNanos(start);
+            return null;
+        }
+
+        String ranchName = template.substring(0, separator);
+        String serverName = template.substring(separator + 1) + "-" + DockerService.getInstanceIds().next(template);
+        dockerService.startAsync(ranchName, serverName, true).whenComplete((result, throwable) -> {
+            DockerService.getMetrics().histogram("remote.create-worker.latency").recordNanos(start);
+            if (result != null && !result.isSuccess())
+                Logger.warn("Remote start of " + ranchName + "-" + serverName + " failed: " + result.getError().reason());
+        });
+        return ranchName + "-" + serverName;
+    }
+
+    @Override
+    public List<StartResult> createServers(List<String> names, String idempotencyKey) {
+        long start = System.nanoTime();
+        List<CompletableFuture<LifecycleResult>> starts = dockerService.startBatch(names, true, idempotencyKey);
+        List<StartResult> results = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            String name = names.get(i);
+            CompletableFuture<LifecycleResult> pending = starts.get(i);
+            // Starts still waiting for admission or for the server to load are only reported as accepted
+            results.add(pending.isDone() ? toResult(pending.join()) : new StartResult(name, null, StartResult.State.ACCEPTED, null));
+            pending.thenAccept(result -> {
+                if (!result.isSuccess())
+                    Logger.warn("Remote start of " + name + " failed: " + result.getError().reason());
+            });
+        }
+        CompletableFuture.allOf(starts.toArray(CompletableFuture[]::new))
+                .whenComplete((unused, throwable) -> DockerService.getMetrics().histogram("remote.create-servers.latency").recordNanos(start));
+        return results;
+    }
+
+    @Override
+    public StartResult startServer(String name, String idempotencyKey) {
+        long start = System.nanoTime();
+        int separator = name.indexOf('-');
+        if (separator <= 0)
+            return new StartResult(name, null, StartResult.State.FAILED, name + " is not a qualified server name.");
+
+        // Answered right away, waiting for the server to load would hold a remote worker for the whole start
+        CompletableFuture<LifecycleResult> pending = dockerService.startAsync(name.substring(0, separator), name.substring(separator + 1), true, idempotencyKey);
+        pending.whenComplete((result, throwable) -> {
+            DockerService.getMetrics().histogram("remote.start-server.latency").recordNanos(start);
+            if (result != null && !result.isSuccess())
+                Logger.warn("Remote start of " + name + " failed: " + result.getError().reason());
+        });
+        return pending.isDone() ? toResult(pending.join()) : new StartResult(name, null, StartResult.State.ACCEPTED, null);
+    }
+
+    @Override
+    public StartResult getStart(String name, String idempotencyKey) {
+        Optional<CompletableFuture<LifecycleResult>> pending = dockerService.findStart(name, idempotencyKey);
+        if (pending.isPresent())
+            return pending.get().isDone() ? toResult(pending.get().join()) : new StartResult(name, null, StartResult.State.ACCEPTED, null);
+
+        int separator = name.indexOf('-');
+        if (separator <= 0 || dockerService.getRanch(name.substring(0, separator)).isEmpty())
+            return new StartResult(name, null, StartResult.State.FORWARDED, null);
+
+        // Starts without a key are forgotten once completed, a loaded server is all that is left of them
+        return dockerService.getServer(name)
+                .filter(ServerContainer::isLoaded)
+                .map(server -> new StartResult(name, server.getContainerId(), StartResult.State.LOADED, null))
+                .orElseGet(() -> new StartResult(name, null, StartResult.State.FAILED, "No start of " + name + " in progress."));
+    }
+
+    private StartResult toResult(LifecycleResult result) {
+        StartResult.State state = switch (result.getOutcome()) {
+            case LOADED -> StartResult.State.LOADED;
+            case FORWARDED -> StartResult.State.FORWARDED;
+            case TIMED_OUT -> StartResult.State.TIMED_OUT;
+            default -> StartResult.State.FAILED;
+        };
+        String containerId = dockerService.getServer(result.getServer()).map(ServerContainer::getContainerId).orElse(null);
+        return new StartResult(result.getServer(), containerId, state, result.isSuccess() ? null : result.getError().reason());
+    }
+}
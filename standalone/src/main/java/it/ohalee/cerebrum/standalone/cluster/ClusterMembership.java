@@ -0,0 +1,116 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.basement.BasementLoader;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import lombok.Getter;
+import org.redisson.api.RMapCache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the ranches among the running Cerebrum nodes.
+ * <p>
+ * Every node keeps an entry with a short TTL in a Redis map, refreshed each {@code heartbeat} seconds, and the
+ * owner of a ranch is picked by consistent hashing over the live entries. When a node joins or leaves, every
+ * node sees the new member set at its next heartbeat and {@code onChange} moves the affected ranches.
+ * With clustering disabled this node owns every ranch.
+ */
+public class ClusterMembership {
+
+    private static final String MEMBERS_KEY = "cerebrum:cluster:members";
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final String nodeId;
+    private final long heartbeat;
+    private final long timeout;
+    private final int virtualNodes;
+    private final Runnable onChange;
+    private volatile Set<String> members;
+    private volatile HashRing ring;
+    private RMapCache<String, Long> redisMembers;
+    private SchedulerTask task;
+
+    public ClusterMembership(CerebrumConfigurationNode section, String defaultNodeId, MetricsRegistry metrics, Runnable onChange) {
+        this.enabled = section.getBoolean("enabled", false);
+        String configuredId = section.getString("node-id", null);
+        this.nodeId = configuredId == null || configuredId.isEmpty() ? defaultNodeId : configuredId;
+        this.heartbeat = Math.max(1, section.getLong("heartbeat", 2));
+        this.timeout = Math.max(heartbeat * 2, section.getLong("timeout", 6));
+        this.virtualNodes = Math.max(1, section.getInteger("virtual-nodes", 64));
+        this.onChange = onChange;
+        this.members = Set.of(nodeId);
+        this.ring = new HashRing(members, virtualNodes);
+
+        metrics.gauge("cluster.members", () -> members.size());
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+
+        redisMembers = BasementLoader.get().redisManager().redissonClient().getMapCache(MEMBERS_KEY);
+        refresh();
+        task = scheduler.asyncRepeating(() -> {
+            if (refresh())
+                onChange.run();
+        }, heartbeat, TimeUnit.SECONDS);
+        Logger.info("Joined the Cerebrum cluster as " + nodeId + ", members: " + members);
+    }
+
+    public void leave() {
+        if (!enabled) return;
+
+        if (task != null)
+            task.cancel();
+        try {
+            redisMembers.fastRemove(nodeId);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not leave the Cerebrum cluster", e);
+        }
+    }
+
+    public Set<String> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    public boolean owns(String ranchName) {
+        return !enabled || nodeId.equals(ring.owner(ranchName));
+    }
+
+    public String ownerOf(String ranchName) {
+        return enabled ? ring.owner(ranchName) : nodeId;
+    }
+
+    /**
+     * Refreshes the entry of this node and reads the live members.
+     *
+     * @return whether the members have changed
+     */
+    private boolean refresh() {
+        Set<String> current;
+        try {
+            redisMembers.fastPut(nodeId, System.currentTimeMillis(), timeout, TimeUnit.SECONDS);
+            current = new HashSet<>(redisMembers.readAllKeySet());
+        } catch (RuntimeException e) {
+            Logger.warn("Cerebrum cluster heartbeat failed, keeping the last known members", e);
+            return false;
+        }
+
+        current.add(nodeId);
+        if (current.equals(members)) return false;
+
+        Logger.info("Cerebrum cluster members changed: " + members + " -> " + current);
+        members = current;
+        ring = new HashRing(current, virtualNodes);
+        return true;
+    }
+
+}
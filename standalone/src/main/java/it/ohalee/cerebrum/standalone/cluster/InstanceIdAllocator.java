@@ -0,0 +1,109 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Hands out instance ids unique across every Cerebrum node, one counter per worker template.
+ * <p>
+ * Each node reserves ids in blocks of {@code blockSize} from a Redis counter and serves them locally, the next
+ * block is reserved in the background once half of the current one is used, so an allocation almost never
+ * waits for Redis. Ids left in a block when a node stops are skipped, they are unique but not dense.
+ * <p>
+ * Instances may also be started with a name chosen by the caller: the counter is moved past the ids found on the
+ * daemons when a ranch is loaded, and ids whose name is registered on this node are skipped.
+ */
+public class InstanceIdAllocator {
+
+    private static final String KEY_PREFIX = "cerebrum:instances:";
+
+    private final RedissonClient redisson;
+    private final int blockSize;
+    private final Predicate<String> taken;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param taken whether a qualified instance name, e.g. "bedwars-instance-5", is already registered
+     */
+    public InstanceIdAllocator(RedissonClient redisson, int blockSize, Predicate<String> taken) {
+        this.redisson = redisson;
+        this.blockSize = Math.max(1, blockSize);
+        this.taken = taken;
+    }
+
+    /**
+     * @param template the ranch and the worker, e.g. "bedwars-instance"
+     * @return an id never returned before for this template, by any node
+     */
+    public long next(String template) {
+        Block block = blocks.computeIfAbsent(template, Block::new);
+        long id;
+        do {
+            id = block.next();
+        } while (taken.test(template + "-" + id));
+        return id;
+    }
+
+    /**
+     * Moves the counter of a template past an id in use, so that it is never handed out.
+     *
+     * @param template the ranch and the worker, e.g. "bedwars-instance"
+     * @param used     the greatest id in use
+     */
+    public void seed(String template, long used) {
+        RAtomicLong counter = redisson.getAtomicLong(KEY_PREFIX + template);
+        long current;
+        do {
+            current = counter.get();
+            if (current >= used) return;
+        } while (!counter.compareAndSet(current, used));
+        Logger.info("Instance ids of " + template + " now start after " + used);
+    }
+
+    private CompletableFuture<Long> reserve(String template) {
+        return redisson.getAtomicLong(KEY_PREFIX + template).addAndGetAsync(blockSize)
+                .toCompletableFuture()
+                .thenApply(end -> end - blockSize + 1);
+    }
+
+    private class Block {
+
+        private final String template;
+        private long next;
+        private long end;
+        private CompletableFuture<Long> prefetched;
+
+        private Block(String template) {
+            this.template = template;
+        }
+
+        private synchronized long next() {
+            if (next >= end) {
+                CompletableFuture<Long> start = prefetched != null ? prefetched : reserve(template);
+                prefetched = null;
+                try {
+                    next = start.join();
+                } catch (RuntimeException e) {
+                    // The prefetch may have failed long ago, try once more now
+                    Logger.warn("Could not reserve instance ids of " + template + ", retrying", e);
+                    next = reserve(template).join();
+                }
+                end = next + blockSize;
+            }
+
+            long id = next++;
+            if (prefetched == null && end - next <= blockSize / 2)
+                prefetched = reserve(template);
+            return id;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Elects the Cerebrum node running the singleton duties (the remote service) through a {@link LeaseStore}.
+ * <p>
+ * The leader renews its lease each {@code renew-interval}; when it dies the lease expires after {@code lease-time}
+ * and the first standby polling afterwards takes over. A leader that cannot renew steps down as soon as its
+ * lease may have expired, before anyone else can acquire it.
+ * With leadership disabled the static {@code leader} flag is used.
+ */
+public class LeaderElection {
+
+    @Getter
+    private final boolean enabled;
+    private final boolean eligible;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final long renewMillis;
+    private final Supplier<LeaseStore> storeSupplier;
+    private final Runnable onElected;
+    private final Runnable onRevoked;
+    private final Counter changes;
+    private final LongSupplier clock;
+    private LeaseStore store;
+    private SchedulerTask task;
+    @Getter
+    private volatile long token = -1;
+    private volatile long deadline;
+
+    public LeaderElection(CerebrumConfigurationNode section, boolean eligible, String nodeId, Supplier<LeaseStore> storeSupplier,
+                          MetricsRegistry metrics, Runnable onElected, Runnable onRevoked) {
+        this(section, eligible, nodeId, storeSupplier, metrics, onElected, onRevoked, System::nanoTime);
+    }
+
+    /**
+     * @param clock source of {@link System#nanoTime()}, replaced by tests to expire the lease locally
+     */
+    LeaderElection(CerebrumConfigurationNode section, boolean eligible, String nodeId, Supplier<LeaseStore> storeSupplier,
+                   MetricsRegistry metrics, Runnable onElected, Runnable onRevoked, LongSupplier clock) {
+        this.clock = clock;
+        this.enabled = section.getBoolean("enabled", false);
+        this.eligible = eligible;
+        this.nodeId = nodeId;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(Math.max(2, section.getLong("lease-time", 5)));
+        this.renewMillis = Math.max(100, Math.min(leaseMillis / 3, section.getLong("renew-interval", 1000)));
+        this.storeSupplier = storeSupplier;
+        this.onElected = onElected;
+        this.onRevoked = onRevoked;
+        this.changes = metrics.counter("leader.changes");
+
+        metrics.gauge("leader.elected", () -> isLeader() ? 1 : 0);
+        metrics.gauge("leader.token", () -> token);
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) {
+            if (eligible) elected(0);
+            return;
+        }
+        if (!eligible) {
+            Logger.info("This Cerebrum node is not eligible as leader");
+            return;
+        }
+
+        store = storeSupplier.get();
+        task = scheduler.asyncRepeating(this::tick, renewMillis, TimeUnit.MILLISECONDS);
+        tick();
+    }
+
+    public synchronized void stop() {
+        if (task != null)
+            task.cancel();
+        if (!enabled || token < 0) return;
+
+        long released = token;
+        revoked("shutting down");
+        try {
+            store.release(nodeId, released);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not release the leader lease, it will expire by itself", e);
+        }
+    }
+
+    /**
+     * @return whether this node holds a lease that cannot have expired yet
+     */
+    public boolean isLeader() {
+        return token >= 0 && (!enabled || clock.getAsLong() - deadline < 0);
+    }
+
+    /**
+     * Fencing check of the singleton duties, done before acting on behalf of the leader: work started under a lease
+     * that has since been lost or replaced must not go on.
+     *
+     * @param token the token this node was elected with when the duty was handed to it
+     * @return whether this node is still the leader elected with that token
+     */
+    public boolean holds(long token) {
+        return token >= 0 && this.token == token && isLeader();
+    }
+
+    synchronized void tick() {
+        long now = clock.getAsLong();
+        try {
+            if (token >= 0) {
+                if (store.renew(nodeId, token, leaseMillis)) {
+                    deadline = now + TimeUnit.MILLISECONDS.toNanos(leaseMillis - renewMillis);
+                } else {
+                    revoked("the lease has been lost");
+                }
+                return;
+            }
+
+            long acquired = store.tryAcquire(nodeId, leaseMillis);
+            if (acquired >= 0) {
+                deadline = now + TimeUnit.MILLISECONDS.toNanos(leaseMillis - renewMillis);
+                elected(acquired);
+            }
+        } catch (RuntimeException e) {
+            if (token >= 0 && now - deadline >= 0) {
+                revoked("the lease could not be renewed: " + e.getMessage());
+            } else {
+                Logger.warn("Leader election tick failed", e);
+            }
+        }
+    }
+
+    private void elected(long token) {
+        this.token = token;
+        changes.increment();
+        Logger.info("This Cerebrum node is now the leader" + (enabled ? " (token " + token + ")" : ""));
+        onElected.run();
+    }
+
+    private void revoked(String reason) {
+        token = -1;
+        changes.increment();
+        Logger.warn("This Cerebrum node is no longer the leader, " + reason);
+        onRevoked.run();
+    }
+
+}
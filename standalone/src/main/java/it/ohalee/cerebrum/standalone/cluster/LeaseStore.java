@@ -0,0 +1,25 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+/**
+ * Storage of the leadership lease. Every acquisition hands out a fencing token greater than all the previous
+ * ones, so that work done under an expired lease can always be told apart from the current leader's.
+ */
+public interface LeaseStore {
+
+    /**
+     * Takes the lease if it is free, or extends it if already held by the holder.
+     *
+     * @param holder      the node asking for the lease
+     * @param ttlMillis   how long the lease lasts without renewals
+     * @return the fencing token of the lease, or -1 if held by another node
+     */
+    long tryAcquire(String holder, long ttlMillis);
+
+    /**
+     * @return whether the lease was still held with this token and has been extended
+     */
+    boolean renew(String holder, long token, long ttlMillis);
+
+    void release(String holder, long token);
+
+}
@@ -0,0 +1,71 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.List;
+
+/**
+ * {@link LeaseStore} on a Redis key holding {@code holder:token}, with the token taken from a counter
+ * that is never reset. Every operation is a single script, so check and update are atomic.
+ */
+public class RedisLeaseStore implements LeaseStore {
+
+    private static final String ACQUIRE = """
+            local current = redis.call('get', KEYS[1])
+            if current then
+                local prefix = ARGV[1] .. ':'
+                if string.sub(current, 1, string.len(prefix)) == prefix then
+                    redis.call('pexpire', KEYS[1], ARGV[2])
+                    return tonumber(string.sub(current, string.len(prefix) + 1))
+                end
+                return -1
+            end
+            local token = redis.call('incr', KEYS[2])
+            redis.call('set', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2])
+            return token
+            """;
+    private static final String RENEW = """
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('pexpire', KEYS[1], ARGV[2])
+            end
+            return 0
+            """;
+    private static final String RELEASE = """
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('del', KEYS[1])
+            end
+            return 0
+            """;
+
+    private final RScript script;
+    private final String leaseKey;
+    private final String tokenKey;
+
+    public RedisLeaseStore(RedissonClient redisson, String name) {
+        this.script = redisson.getScript(StringCodec.INSTANCE);
+        this.leaseKey = name + ":lease";
+        this.tokenKey = name + ":token";
+    }
+
+    @Override
+    public long tryAcquire(String holder, long ttlMillis) {
+        Long token = script.eval(RScript.Mode.READ_WRITE, ACQUIRE, RScript.ReturnType.INTEGER,
+                List.of(leaseKey, tokenKey), holder, String.valueOf(ttlMillis));
+        return token == null ? -1 : token;
+    }
+
+    @Override
+    public boolean renew(String holder, long token, long ttlMillis) {
+        Long renewed = script.eval(RScript.Mode.READ_WRITE, RENEW, RScript.ReturnType.INTEGER,
+                List.of(leaseKey), holder + ":" + token, String.valueOf(ttlMillis));
+        return renewed != null && renewed == 1;
+    }
+
+    @Override
+    public void release(String holder, long token) {
+        script.eval(RScript.Mode.READ_WRITE, RELEASE, RScript.ReturnType.INTEGER, List.of(leaseKey), holder + ":" + token);
+    }
+
+}
@@ -28,6 +28,8 @@ public class StandaloneCommandManager implements CommandExecutor {
         this.arguments.put("end", new EndArgument(this));
         this.arguments.put("reload", new ReloadArgument(dockerService));
         this.arguments.put("update", new UpdateArgument(dockerService));
+        this.arguments.put("metrics", new MetricsArgument(dockerService));
+        this.arguments.put("stats", new StatsArgument(dockerService));
     }
 
     @Override
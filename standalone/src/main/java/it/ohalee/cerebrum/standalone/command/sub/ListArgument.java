@@ -3,6 +3,7 @@ package it.ohalee.cerebrum.standalone.command.sub;
 import it.ohalee.cerebrum.standalone.command.ArgumentCommand;
 import it.ohalee.cerebrum.standalone.docker.DockerService;
 import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.probe.ProbeResult;
 import it.ohalee.cerebrum.standalone.docker.rancher.Ranch;
 import lombok.RequiredArgsConstructor;
 
@@ -15,7 +16,7 @@ public class ListArgument implements ArgumentCommand {
 
     @Override
     public String execute(String arg, String ranch, String serverName, Boolean value) {
-        StringBuilder builder = new StringBuilder("\n");
+        StringBuilder builder = new StringBuilder("\n").append(DockerService.getAdmission().describe()).append("\n");
         if (ranch.equalsIgnoreCase("all")) {
             for (Ranch registeredRanch : dockerService.getRanches()) {
                 builder.append(registeredRanch.getName()).append(":\n");
@@ -26,6 +27,9 @@ public class ListArgument implements ArgumentCommand {
                             .append(server.getName().replace(registeredRanch.getName() + "-", ""))
                             .append(" (Loaded: ").append(server.isLoaded()).append(")")
                             .append(" (Running: ").append(server.isRunning()).append(")")
+                            .append(DockerService.getEndpoints().isDistributed() ? " (Endpoint: " + server.getEndpoint() + ")" : "")
+                            .append(ping(server))
+                            .append(server.getLastStopLatency() < 0 ? "" : " (Last stop: " + server.getLastStopLatency() + "ms)")
                             .append("\n");
                 }
             }
@@ -43,8 +47,18 @@ public class ListArgument implements ArgumentCommand {
                     .append(server.getName().replace(optional.get().getName() + "-", ""))
                     .append(" (Loaded: ").append(server.isLoaded()).append(")")
                     .append(" (Running: ").append(server.isRunning()).append(")")
+                    .append(DockerService.getEndpoints().isDistributed() ? " (Endpoint: " + server.getEndpoint() + ")" : "")
+                    .append(ping(server))
+                    .append(server.getLastStopLatency() < 0 ? "" : " (Last stop: " + server.getLastStopLatency() + "ms)")
                     .append("\n");
         }
         return builder.toString();
     }
+
+    private static String ping(ServerContainer server) {
+        ProbeResult probe = server.getLastProbe();
+        if (probe == null || !server.isRunning()) return "";
+        if (!probe.isSuccess()) return " (Ping: " + probe.getError() + ")";
+        return " (Ping: " + probe.getLatencyMillis() + "ms, " + probe.getOnline() + "/" + probe.getMax() + " players)";
+    }
 }
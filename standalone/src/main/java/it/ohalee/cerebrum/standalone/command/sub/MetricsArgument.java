@@ -0,0 +1,16 @@
+package it.ohalee.cerebrum.standalone.command.sub;
+
+import it.ohalee.cerebrum.standalone.command.ArgumentCommand;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class MetricsArgument implements ArgumentCommand {
+
+    private final DockerService dockerService;
+
+    @Override
+    public String execute(String arg, String filter, String serverName, Boolean value) {
+        return DockerService.getMetrics().format(filter == null || filter.equalsIgnoreCase("all") ? null : filter);
+    }
+}
@@ -12,7 +12,7 @@ public class QuitArgument implements ArgumentCommand {
 
     @Override
     public String execute(String arg, String ranch, String serverName, Boolean value) {
-        DockerService.getExecutor().shutdown();
+        dockerService.shutdown();
         CerebrumApplication.shutdown();
         return "The application is shutting down";
     }
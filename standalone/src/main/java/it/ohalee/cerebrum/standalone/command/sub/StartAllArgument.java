@@ -1,9 +1,7 @@
 package it.ohalee.cerebrum.standalone.command.sub;
 
-import it.ohalee.cerebrum.app.util.CerebrumError;
 import it.ohalee.cerebrum.standalone.command.ArgumentCommand;
 import it.ohalee.cerebrum.standalone.docker.DockerService;
-import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
@@ -13,6 +11,6 @@ public class StartAllArgument implements ArgumentCommand {
 
     @Override
     public String execute(String arg, String ranch, String serverName, Boolean value) {
-        return CerebrumError.evaluate(dockerService.handle(ServerContainer::start), "All servers should start up");
+        return dockerService.startAll("Start all", server -> !server.isRunning()).format("All servers should start up");
     }
 }
@@ -21,7 +21,7 @@ public class StartArgument implements ArgumentCommand {
         }
 
         if (serverName.equalsIgnoreCase("all")) {
-            return CerebrumError.evaluate(optRanch.get().startLeaders(), "The " + ranch + " ranch servers are starting up");
+            return dockerService.startLeaders(optRanch.get()).format("The " + ranch + " ranch servers are starting up");
         }
 
         return CerebrumError.evaluate(dockerService.startServer(ranch, serverName, false),
@@ -0,0 +1,60 @@
+package it.ohalee.cerebrum.standalone.command.sub;
+
+import it.ohalee.cerebrum.standalone.command.ArgumentCommand;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.rancher.Ranch;
+import it.ohalee.cerebrum.standalone.docker.stats.StatsSummary;
+import lombok.RequiredArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@RequiredArgsConstructor
+public class StatsArgument implements ArgumentCommand {
+
+    private final DockerService dockerService;
+
+    @Override
+    public String execute(String arg, String ranch, String serverName, Boolean day) {
+        boolean wholeDay = day != null && day;
+        long window = wholeDay ? TimeUnit.DAYS.toMillis(1) : TimeUnit.MINUTES.toMillis(1);
+
+        Collection<Ranch> ranches;
+        if (ranch.equalsIgnoreCase("all")) {
+            ranches = dockerService.getRanches();
+        } else {
+            Optional<Ranch> optional = dockerService.getRanch(ranch);
+            if (optional.isEmpty()) {
+                return "Operation failed, cannot find " + ranch + " as ranch.";
+            }
+            ranches = List.of(optional.get());
+        }
+
+        StringBuilder builder = new StringBuilder("\nAverages of the last ").append(wholeDay ? "24h" : "minute").append("\n");
+        for (Ranch registeredRanch : ranches) {
+            StatsSummary total = new StatsSummary();
+            Map<ServerContainer, StatsSummary> summaries = new HashMap<>();
+            for (ServerContainer server : registeredRanch.getServers()) {
+                if (!serverName.equalsIgnoreCase("all") && !server.getName().equals(registeredRanch.getName() + "-" + serverName))
+                    continue;
+                DockerService.getStats().getStats(server).map(stats -> stats.summarize(window)).filter(summary -> !summary.isEmpty())
+                        .ifPresent(summary -> {
+                            summaries.put(server, summary);
+                            total.merge(summary);
+                        });
+            }
+            if (summaries.isEmpty()) continue;
+
+            builder.append(registeredRanch.getName()).append(": ").append(total.format()).append("\n");
+            // Heaviest first, so noisy neighbours stand out
+            summaries.entrySet().stream()
+                    .sorted(Comparator.comparingDouble((Map.Entry<ServerContainer, StatsSummary> entry) -> entry.getValue().getCpu()).reversed())
+                    .forEach(entry -> builder.append("  ")
+                            .append(entry.getKey().getName().replace(registeredRanch.getName() + "-", ""))
+                            .append(DockerService.getEndpoints().isDistributed() ? " @" + entry.getKey().getEndpoint() : "")
+                            .append(": ").append(entry.getValue().format()).append("\n"));
+        }
+        return builder.toString();
+    }
+}
@@ -1,6 +1,5 @@
 package it.ohalee.cerebrum.standalone.command.sub;
 
-import it.ohalee.cerebrum.app.util.CerebrumError;
 import it.ohalee.cerebrum.standalone.command.ArgumentCommand;
 import it.ohalee.cerebrum.standalone.docker.DockerService;
 import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
@@ -16,6 +15,6 @@ public class StopAllArgument implements ArgumentCommand {
 
     @Override
     public String execute(String arg, String ranch, String serverName, Boolean value) {
-        return CerebrumError.evaluate(dockerService.handle(ServerContainer::stop), "All servers should shut down");
+        return dockerService.handle("Stop all", ServerContainer::isRunning, ServerContainer::stop).format("All servers should shut down");
     }
 }
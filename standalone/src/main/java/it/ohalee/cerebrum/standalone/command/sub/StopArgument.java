@@ -21,7 +21,7 @@ public class StopArgument implements ArgumentCommand {
         }
 
         if (serverName.equalsIgnoreCase("all")) {
-            return CerebrumError.evaluate(optRanch.get().shutdown(), "The " + ranch + " ranch servers are shutting down");
+            return optRanch.get().shutdown().format("The " + ranch + " ranch servers are shutting down");
         }
 
         return CerebrumError.evaluate(dockerService.stopServer(ranch, serverName),
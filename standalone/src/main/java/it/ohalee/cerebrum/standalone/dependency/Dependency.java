@@ -15,6 +15,7 @@ public enum Dependency {
     DOCKER_JAVA_TRANSPORT_HTTPCLIENT5("com.github.docker-java", "docker-java-transport-httpclient5", "3.3.3"),
     DOCKER_JAVA_TRANSPORT_JERSEY("com.github.docker-java", "docker-java-transport-jersey", "3.3.3"),
     DOCKER_JAVA_TRANSPORT_NETTY("com.github.docker-java", "docker-java-transport-netty", "3.3.3"),
+    DOCKER_JAVA_TRANSPORT_ZERODEP("com.github.docker-java", "docker-java-transport-zerodep", "3.3.3"),
 
     COMMONS_COMPRESS("org.apache.commons", "commons-compress", "1.23.0"),
     COMMONS_LANG3("org.apache.commons", "commons-lang3", "3.12.0"),
@@ -1,27 +1,48 @@
 package it.ohalee.cerebrum.standalone.docker;
 
-import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.ListContainersCmd;
 import com.github.dockerjava.api.model.Container;
-import com.github.dockerjava.core.DefaultDockerClientConfig;
-import com.github.dockerjava.core.DockerClientConfig;
-import com.github.dockerjava.core.DockerClientImpl;
-import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
-import com.github.dockerjava.transport.DockerHttpClient;
 import it.ohalee.basementlib.api.redis.RedisManager;
 import it.ohalee.basementlib.api.redis.messages.implementation.VelocityNotifyMessage;
 import it.ohalee.basementlib.api.remote.RemoteCerebrumService;
 import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
 import it.ohalee.cerebrum.app.util.CerebrumError;
 import it.ohalee.cerebrum.app.util.CerebrumReason;
+import it.ohalee.cerebrum.common.remote.RemoteWorkerService;
 import it.ohalee.cerebrum.standalone.basement.BasementLoader;
-import it.ohalee.cerebrum.standalone.basement.redis.handlers.StartServerHandler;
+import it.ohalee.cerebrum.standalone.basement.redis.CerebrumMessenger;
 import it.ohalee.cerebrum.standalone.basement.redis.handlers.VelocityNotifyHandler;
 import it.ohalee.cerebrum.standalone.basement.redis.message.StartServerMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
 import it.ohalee.cerebrum.standalone.basement.redis.remote.RemoteCerebrumServiceImpl;
+import it.ohalee.cerebrum.standalone.basement.redis.remote.RemoteExecutors;
+import it.ohalee.cerebrum.standalone.basement.redis.remote.RemoteWorkerServiceImpl;
+import it.ohalee.cerebrum.standalone.cluster.ClusterMembership;
+import it.ohalee.cerebrum.standalone.cluster.InstanceIdAllocator;
+import it.ohalee.cerebrum.standalone.cluster.LeaderElection;
+import it.ohalee.cerebrum.standalone.cluster.RedisLeaseStore;
 import it.ohalee.cerebrum.standalone.config.CerebrumConfigAdapter;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.admission.AdmissionController;
+import it.ohalee.cerebrum.standalone.docker.autoscale.Autoscaler;
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
+import it.ohalee.cerebrum.standalone.docker.container.LifecycleResult;
 import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.endpoint.DockerEndpoint;
+import it.ohalee.cerebrum.standalone.docker.endpoint.EndpointPool;
+import it.ohalee.cerebrum.standalone.docker.event.DockerEventListener;
+import it.ohalee.cerebrum.standalone.docker.fleet.FleetPublisher;
+import it.ohalee.cerebrum.standalone.docker.journal.JournalEvent;
+import it.ohalee.cerebrum.standalone.docker.journal.LifecycleJournal;
+import it.ohalee.cerebrum.standalone.docker.probe.StatusProber;
+import it.ohalee.cerebrum.standalone.docker.rancher.BootPlanner;
+import it.ohalee.cerebrum.standalone.docker.rancher.ContainerNameIndex;
+import it.ohalee.cerebrum.standalone.docker.rancher.OperationReport;
 import it.ohalee.cerebrum.standalone.docker.rancher.Ranch;
+import it.ohalee.cerebrum.standalone.docker.rancher.Reaper;
+import it.ohalee.cerebrum.standalone.docker.stats.StatsCollector;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
 import lombok.Getter;
 
 import java.io.File;
@@ -30,30 +51,102 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class DockerService {
 
     public static final UUID uuid = UUID.randomUUID();
     public static final String SENDER_NAME = "cerebrum";
+    /**
+     * Settings of this Cerebrum node, every other top level section of settings.yml is a ranch.
+     */
+    public static final String NODE_SECTION = "cerebrum";
     @Getter
-    private final static ExecutorService executor = Executors.newFixedThreadPool(4);
+    private static ExecutorService executor;
     @Getter
-    private static DockerClient client;
+    private static EndpointPool endpoints;
+    @Getter
+    private static final MetricsRegistry metrics = new MetricsRegistry();
+    @Getter
+    private static AdmissionController admission;
+    @Getter
+    private static StatsCollector stats;
+    @Getter
+    private static InstanceIdAllocator instanceIds;
+    @Getter
+    private static LifecycleJournal journal;
+    @Getter
+    private static CerebrumScheduler scheduler;
     private final CerebrumConfigAdapter settings;
     private final CerebrumConfigAdapter share;
+    private final CerebrumConfigurationNode node;
+    private final List<DockerEventListener> eventListeners = new ArrayList<>();
+    private final Autoscaler autoscaler;
+    private final Reaper reaper;
+    private final StatusProber prober;
+    private final FleetPublisher fleet;
+    private final CerebrumMessenger messenger;
+    @Getter
+    private final ClusterMembership cluster;
+    @Getter
+    private final LeaderElection election;
+    private final ExecutorService remoteExecutor;
 
-    private final Map<String, Ranch> ranches = new HashMap<>();
+    private final Map<String, Ranch> ranches = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<LifecycleResult>> inFlight = new ConcurrentHashMap<>();
+    private volatile ContainerNameIndex nameIndex = new ContainerNameIndex(Collections.emptyList());
 
-    public DockerService(CerebrumConfigAdapter settings, CerebrumConfigAdapter share) {
+    public DockerService(CerebrumScheduler scheduler, CerebrumConfigAdapter settings, CerebrumConfigAdapter share) {
+        DockerService.scheduler = scheduler;
         this.settings = settings;
         this.share = share;
-        client = registerClient();
+        this.node = settings.section(NODE_SECTION);
+        executor = newExecutor(node.getInteger("docker.threads", 64));
+        this.remoteExecutor = RemoteExecutors.create(node.section("remote"));
+        journal = new LifecycleJournal(node.section("journal"), metrics);
+        metrics.gauge("lifecycle.in-flight", inFlight::size);
+        endpoints = new EndpointPool(node, metrics, this::allServers);
+        admission = new AdmissionController(scheduler, node.section("admission"), metrics);
+        autoscaler = new Autoscaler(this, node.section("autoscaler"), metrics);
+        reaper = new Reaper(this, node.section("reaper"), metrics);
+        prober = new StatusProber(node.section("prober"), metrics, this::allServers);
+        stats = new StatsCollector(node.section("stats"), this::allServers);
+        fleet = new FleetPublisher(node.section("fleet"), metrics, this::getRanches);
+        messenger = new CerebrumMessenger(node.section("messages"), metrics, this);
+        for (DockerEndpoint endpoint : endpoints.getEndpoints())
+            eventListeners.add(new DockerEventListener(this, endpoint, scheduler));
+        cluster = new ClusterMembership(node.section("cluster"), uuid.toString(), metrics, this::rebalance);
+        election = new LeaderElection(node.section("leadership"), settings.getBoolean("leader", true), cluster.getNodeId(),
+                () -> new RedisLeaseStore(BasementLoader.get().redisManager().redissonClient(), "cerebrum:leader"),
+                metrics, this::registerRemoteService, this::deregisterRemoteService);
+    }
+
+    /**
+     * Runs the blocking Docker calls: operations on ranches, pool fills, starts and stops. Bounded so that a mass
+     * operation queues up instead of opening a thread, and a connection to the daemon, per container.
+     */
+    private static ExecutorService newExecutor(int threads) {
+        int size = Math.max(4, threads);
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "cerebrum-docker-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     public Set<String> getRegisteredRanches() {
@@ -68,83 +161,533 @@ public class DockerService {
         return Optional.ofNullable(ranches.get(ranch));
     }
 
+    /**
+     * @param qualifiedName the server name with its ranch, e.g. "bedwars-lobby-1"
+     */
+    public Optional<ServerContainer> getServer(String qualifiedName) {
+        return resolveRanch(qualifiedName).flatMap(ranch -> ranch.getServer(qualifiedName.substring(ranch.getName().length() + 1)));
+    }
+
+    private Stream<ServerContainer> allServers() {
+        return ranches.values().stream().flatMap(ranch -> ranch.getServers().stream());
+    }
+
+    public void shutdown() {
+        election.stop();
+        try {
+            BasementLoader.get().redisManager().redissonClient().getRemoteService().deregister(RemoteWorkerService.class);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not deregister the remote service", e);
+        }
+        remoteExecutor.shutdown();
+        messenger.close();
+        cluster.leave();
+        eventListeners.forEach(DockerEventListener::close);
+        stats.close();
+        autoscaler.close();
+        reaper.close();
+        prober.close();
+        fleet.close();
+        endpoints.close();
+        journal.close();
+        executor.shutdown();
+    }
+
     public void postExecution() {
+        // Replayed before the containers are discovered, which uses the recovered state
+        journal.open(scheduler);
         registerTopics();
+        endpoints.start(scheduler);
+        eventListeners.forEach(DockerEventListener::subscribe);
+        stats.start(scheduler);
+        cluster.start(scheduler);
+        election.start(scheduler);
         findRanches();
+        autoscaler.start(scheduler);
+        reaper.start(scheduler);
+        prober.start(scheduler);
+        fleet.start(scheduler);
         updateJars();
     }
 
     public void registerTopics() {
         RedisManager redisManager = BasementLoader.get().redisManager();
-        if (settings.getBoolean("leader", true))
-            redisManager.redissonClient().getRemoteService().register(RemoteCerebrumService.class, new RemoteCerebrumServiceImpl(this), 3, Executors.newSingleThreadExecutor());
+        instanceIds = new InstanceIdAllocator(redisManager.redissonClient(), node.getInteger("instances.block-size", 16),
+                name -> getServer(name).isPresent());
+        // Allocation is safe on every node, starts of ranches managed by another node are forwarded
+        redisManager.redissonClient().getRemoteService().register(RemoteWorkerService.class, new RemoteWorkerServiceImpl(this), RemoteExecutors.workers(node.section("remote")), remoteExecutor);
         redisManager.registerTopicListener(VelocityNotifyMessage.TOPIC, new VelocityNotifyHandler(this));
-        redisManager.registerTopicListener(StartServerMessage.TOPIC, new StartServerHandler(this));
-    }
-
-    private DockerClient registerClient() {
-        DockerClientConfig dockerConfig = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
-        DockerHttpClient dockerHttpClient = new ApacheDockerHttpClient.Builder()
-                .dockerHost(dockerConfig.getDockerHost())
-                .maxConnections(100)
-                .connectionTimeout(Duration.ofSeconds(30))
-                .responseTimeout(Duration.ofSeconds(45))
-                .build();
-        return DockerClientImpl.getInstance(dockerConfig, dockerHttpClient);
-    }
-
-    public void findRanches() {
-        try (ListContainersCmd cmd = DockerService.getClient().listContainersCmd()) {
-            List<Container> allContainers = cmd.exec();
-            for (String ranchName : settings.getKeys()) {
-                Ranch newRanch = new Ranch(ranchName, settings.section(ranchName));
-                ranches.put(ranchName, newRanch);
-                executor.submit(() -> {
-                    newRanch.findContainers(allContainers.stream()
-                            .filter(container -> container.getNames().length > 0 && container.getNames()[0].substring(1).startsWith(ranchName))
-                            .collect(Collectors.toList()));
-                    newRanch.registerLeaders();
-                });
+        messenger.start(redisManager);
+    }
+
+    private void registerRemoteService() {
+        BasementLoader.get().redisManager().redissonClient().getRemoteService()
+                .register(RemoteCerebrumService.class, new RemoteCerebrumServiceImpl(this, election, election.getToken()), RemoteExecutors.workers(node.section("remote")), remoteExecutor);
+    }
+
+    private void deregisterRemoteService() {
+        try {
+            BasementLoader.get().redisManager().redissonClient().getRemoteService().deregister(RemoteCerebrumService.class);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not deregister the remote service", e);
+        }
+    }
+
+    /**
+     * Checks the configuration rather than the loaded ranches, so that it also works for ranches managed by another node.
+     */
+    public boolean isWorker(String ranchName, String workerName) {
+        return !ranchName.equals(NODE_SECTION) && settings.section(ranchName).section("worker").getKeys().contains(workerName);
+    }
+
+    public synchronized void findRanches() {
+        List<String> owned = new ArrayList<>();
+        for (String ranchName : settings.getKeys()) {
+            if (ranchName.equals(NODE_SECTION)) continue;
+            if (cluster.owns(ranchName))
+                owned.add(ranchName);
+            else
+                Logger.info("Ranch " + ranchName + " is managed by Cerebrum node " + cluster.ownerOf(ranchName));
+        }
+        loadRanches(owned);
+    }
+
+    /**
+     * Picks up the ranches this node became the owner of and lets go of the ones now owned by another node.
+     * Containers of released ranches are left running, their new owner adopts them while discovering.
+     */
+    public synchronized void rebalance() {
+        for (String ranchName : new ArrayList<>(ranches.keySet())) {
+            if (!cluster.owns(ranchName)) {
+                ranches.remove(ranchName);
+                Logger.info("Ranch " + ranchName + " is now managed by Cerebrum node " + cluster.ownerOf(ranchName));
+            }
+        }
+        nameIndex = new ContainerNameIndex(ranches.values());
+
+        List<String> gained = new ArrayList<>();
+        for (String ranchName : settings.getKeys()) {
+            if (!ranchName.equals(NODE_SECTION) && cluster.owns(ranchName) && !ranches.containsKey(ranchName))
+                gained.add(ranchName);
+        }
+        if (!gained.isEmpty()) {
+            Logger.info("Taking over ranches " + gained);
+            loadRanches(gained);
+        }
+    }
+
+    private void loadRanches(Collection<String> ranchNames) {
+        Map<String, Ranch> loaded = new LinkedHashMap<>();
+        for (String ranchName : ranchNames) {
+            loaded.put(ranchName, new Ranch(ranchName, settings.section(ranchName)));
+        }
+        ContainerNameIndex index = new ContainerNameIndex(loaded.values());
+
+        // Single pass over the containers of every daemon, each one goes straight to its ranch and pattern
+        Map<Ranch, Map<DockerEndpoint, List<Map.Entry<Container, ContainerSpec>>>> found = new HashMap<>();
+        for (DockerEndpoint endpoint : endpoints.getEndpoints()) {
+            List<Container> allContainers;
+            try (ListContainersCmd cmd = endpoint.getClient().listContainersCmd().withShowAll(true)) {
+                allContainers = cmd.exec();
+            } catch (RuntimeException e) {
+                Logger.severe("Could not list the containers of " + endpoint + ", they will be picked up by its events", e);
+                continue;
+            }
+
+            for (Container container : allContainers) {
+                if (container.getNames() == null || container.getNames().length == 0) continue;
+                index.match(container.getNames()[0].substring(1)).ifPresent(match ->
+                        found.computeIfAbsent(match.getRanch(), ranch -> new LinkedHashMap<>())
+                                .computeIfAbsent(endpoint, unused -> new ArrayList<>())
+                                .add(Map.entry(container, match.getSpec())));
             }
         }
+
+        ranches.putAll(loaded);
+        nameIndex = new ContainerNameIndex(ranches.values());
+        List<CompletableFuture<Void>> discovered = new ArrayList<>();
+        for (Ranch newRanch : loaded.values()) {
+            discovered.add(CompletableFuture.runAsync(() -> {
+                found.getOrDefault(newRanch, Collections.emptyMap()).forEach(newRanch::findContainers);
+                seedInstanceIds(newRanch);
+                newRanch.registerLeaders();
+                newRanch.fillPools();
+            }, executor).exceptionally(throwable -> {
+                Logger.severe("Could not load ranch " + newRanch.getName(), throwable);
+                return null;
+            }));
+        }
+        // Leaders may depend on leaders of other ranches, they are started once every ranch is known
+        CompletableFuture.allOf(discovered.toArray(CompletableFuture[]::new))
+                .thenRunAsync(() -> resume(loaded.values()), executor)
+                .thenComposeAsync(unused -> new BootPlanner(this).boot(loaded.values()), executor);
+    }
+
+    /**
+     * Moves the instance id counters past the worker instances found on the daemons, e.g. "bedwars-instance-5",
+     * which may have been started with a name chosen by the caller.
+     */
+    private void seedInstanceIds(Ranch ranch) {
+        Map<String, Long> used = new HashMap<>();
+        for (ServerContainer server : ranch.getServers()) {
+            if (server.getType() != ServerContainer.Type.WORKER) continue;
+
+            String template = ranch.getName() + "-" + server.getRegisteredName();
+            String suffix = server.getName().startsWith(template + "-") ? server.getName().substring(template.length() + 1) : "";
+            if (suffix.isEmpty() || !suffix.chars().allMatch(Character::isDigit) || suffix.length() > 18) continue;
+            used.merge(template, Long.parseLong(suffix), Math::max);
+        }
+        try {
+            used.forEach(instanceIds::seed);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not seed the instance ids of ranch " + ranch.getName() + ", names already in use are still skipped", e);
+        }
     }
 
-    public CerebrumError handle(Consumer<ServerContainer> consumer) {
+    /**
+     * Resumes the starts and stops interrupted by the last shutdown, as found in the lifecycle journal, and forgets
+     * the entries of servers that no longer exist. Only done for the ranches loaded at boot, the journal of this node
+     * says nothing reliable about ranches taken over later.
+     */
+    private void resume(Collection<Ranch> loaded) {
+        Map<String, JournalEvent> recovered = journal.getRecovered();
+        recovered.forEach((name, event) -> resolveRanch(name).filter(loaded::contains).ifPresent(ranch -> {
+            String serverName = name.substring(ranch.getName().length() + 1);
+            Optional<ServerContainer> server = ranch.getServer(serverName);
+            boolean running = server.map(ServerContainer::isRunning).orElse(false);
+            if ((event == JournalEvent.START_REQUESTED || event == JournalEvent.CREATED) && !running) {
+                Logger.info("Resuming the start of " + name + ", interrupted by the last shutdown");
+                startAsync(ranch.getName(), serverName, false).thenAccept(result -> {
+                    if (!result.isSuccess())
+                        Logger.warn("Resumed start of " + name + " failed: " + result.getError().reason());
+                });
+            } else if (event == JournalEvent.STOP_REQUESTED && running) {
+                Logger.info("Resuming the stop of " + name + ", interrupted by the last shutdown");
+                stopAsync(ranch.getName(), serverName).thenAccept(result -> {
+                    if (!result.isSuccess())
+                        Logger.warn("Resumed stop of " + name + " failed: " + result.getError().reason());
+                });
+            } else if (server.isEmpty()) {
+                journal.record(name, JournalEvent.GONE);
+            }
+        }));
+        journal.forgetRecovered();
+    }
+
+    /**
+     * Runs an operation on the matching servers of every ranch, ranches in parallel and each
+     * one within its own concurrency limit.
+     *
+     * @return the result of every server
+     */
+    public OperationReport handle(String operation, Predicate<ServerContainer> filter, Function<ServerContainer, CerebrumError> action) {
         if (getRanches().isEmpty())
-            return CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered.");
+            return OperationReport.failed(operation, SENDER_NAME, CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered."));
+
+        OperationReport report = new OperationReport(operation);
+        List<CompletableFuture<OperationReport>> tasks = new ArrayList<>();
         for (Ranch ranch : getRanches())
-            for (ServerContainer server : ranch.getServers())
-                consumer.accept(server);
-        return CerebrumError.of(CerebrumReason.OK, null);
+            tasks.add(CompletableFuture.supplyAsync(() -> ranch.forEach(operation, filter, action), executor));
+        for (CompletableFuture<OperationReport> task : tasks)
+            report.merge(task.join());
+        return report;
     }
 
+    /**
+     * Starts the matching servers of every ranch, through admission like any other start.
+     *
+     * @return the result of handing every start to Docker
+     */
+    public OperationReport startAll(String operation, Predicate<ServerContainer> filter) {
+        if (getRanches().isEmpty())
+            return OperationReport.failed(operation, SENDER_NAME, CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered."));
+
+        OperationReport report = new OperationReport(operation);
+        getRanches().stream()
+                .map(ranch -> ranch.forEachAsync(operation, filter, server -> startContainer(ranch, server)))
+                .toList()
+                .forEach(task -> report.merge(task.join()));
+        return report;
+    }
+
+    public OperationReport startLeaders(Ranch ranch) {
+        return ranch.forEachAsync("Start of " + ranch.getName(), server -> server.getType() == ServerContainer.Type.LEADER && !server.isRunning(),
+                server -> startContainer(ranch, server)).join();
+    }
+
+    private CompletableFuture<CerebrumError> startContainer(Ranch ranch, ServerContainer server) {
+        long startedAt = System.currentTimeMillis();
+        CompletableFuture<LifecycleResult> operation = new CompletableFuture<>();
+        if (track(ranch, server.getName().substring(ranch.getName().length() + 1), null, operation) != null)
+            return CompletableFuture.completedFuture(CerebrumError.of(CerebrumReason.OK, null));
+        return launch(server, admission.admit(server.getName()), operation, startedAt);
+    }
+
+    /**
+     * Starts a server, answering once Docker has started its container. A start already in progress is not repeated.
+     */
     public CerebrumError startServer(String ranchName, String serverName, boolean flush) {
+        Ranch ranch = ranches.get(ranchName);
+        if (ranch == null)
+            return forward(ranchName, serverName, flush, null);
+
+        long startedAt = System.currentTimeMillis();
+        CompletableFuture<LifecycleResult> operation = new CompletableFuture<>();
+        if (track(ranch, serverName, null, operation) != null)
+            return CerebrumError.of(CerebrumReason.OK, null);
+
+        Optional<ServerContainer> container = prepareStart(ranch, serverName);
+        if (container.isEmpty()) {
+            CerebrumError error = CerebrumError.of(CerebrumReason.SERVER_ERROR, "Server not registered in ranch " + ranchName + ".");
+            operation.complete(LifecycleResult.failed(ranchName + "-" + serverName, LifecycleResult.Outcome.FAILED, error, startedAt));
+            return error;
+        }
+        return launch(container.get(), admission.admit(container.get().getName()), operation, startedAt).join();
+    }
+
+    /**
+     * @return a future completed once the server is loaded, or when the start fails or times out
+     */
+    public CompletableFuture<LifecycleResult> startAsync(String ranchName, String serverName, boolean flush) {
+        return startAsync(ranchName, serverName, flush, null);
+    }
+
+    /**
+     * Attaches to the start of the same server, or with the same idempotency key, already in progress.
+     */
+    public CompletableFuture<LifecycleResult> startAsync(String ranchName, String serverName, boolean flush, String idempotencyKey) {
+        long startedAt = System.currentTimeMillis();
+        String qualifiedName = ranchName + "-" + serverName;
         Ranch ranch = ranches.get(ranchName);
         if (ranch == null) {
-            if (flush) {
-                BasementLoader.get().redisManager().publishMessage(new StartServerMessage(uuid, ranchName, serverName));
-                return CerebrumError.of(CerebrumReason.OK, null); // Flush is intentional so OK is returned
+            CerebrumError error = forward(ranchName, serverName, flush, idempotencyKey);
+            return CompletableFuture.completedFuture(error.code() == CerebrumReason.OK
+                    ? LifecycleResult.of(qualifiedName, LifecycleResult.Outcome.FORWARDED, startedAt)
+                    : LifecycleResult.failed(qualifiedName, LifecycleResult.Outcome.FAILED, error, startedAt));
+        }
+
+        CompletableFuture<LifecycleResult> operation = new CompletableFuture<>();
+        CompletableFuture<LifecycleResult> existing = track(ranch, serverName, idempotencyKey, operation);
+        if (existing != null)
+            return existing;
+
+        Optional<ServerContainer> container = prepareStart(ranch, serverName);
+        if (container.isEmpty()) {
+            operation.complete(LifecycleResult.failed(qualifiedName, LifecycleResult.Outcome.FAILED,
+                    CerebrumError.of(CerebrumReason.SERVER_ERROR, "Server not registered in ranch " + ranchName + "."), startedAt));
+            return operation;
+        }
+
+        launch(container.get(), admission.admit(container.get().getName()), operation, startedAt);
+        return operation;
+    }
+
+    /**
+     * Queues the local starts for admission next to each other and forwards the others with a single message.
+     *
+     * @return the result of every server, in the same order as the names
+     */
+    public List<CompletableFuture<LifecycleResult>> startBatch(List<String> names, boolean flush, String idempotencyKey) {
+        long startedAt = System.currentTimeMillis();
+        List<CompletableFuture<LifecycleResult>> results = new ArrayList<>(Collections.nCopies(names.size(), null));
+        List<ServerContainer> local = new ArrayList<>();
+        List<CompletableFuture<LifecycleResult>> operations = new ArrayList<>();
+        List<String> forwarded = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            int separator = name.indexOf('-');
+            Ranch ranch = separator <= 0 ? null : ranches.get(name.substring(0, separator));
+            if (ranch == null) {
+                if (separator > 0 && flush) {
+                    forwarded.add(name);
+                    results.set(i, CompletableFuture.completedFuture(LifecycleResult.of(name, LifecycleResult.Outcome.FORWARDED, startedAt)));
+                } else {
+                    results.set(i, CompletableFuture.completedFuture(LifecycleResult.failed(name, LifecycleResult.Outcome.FAILED,
+                            CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered."), startedAt)));
+                }
+                continue;
             }
-            return CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered.");
+
+            String serverName = name.substring(separator + 1);
+            // A batch may ask for several instances of a worker, repeated names are told apart by their occurrence,
+            // which stays the same in the part of the batch forwarded to another node
+            int occurrence = occurrences.merge(name, 1, Integer::sum);
+            CompletableFuture<LifecycleResult> operation = new CompletableFuture<>();
+            CompletableFuture<LifecycleResult> existing = track(ranch, serverName, idempotencyKey == null ? null : idempotencyKey + ":" + name + "#" + occurrence, operation);
+            results.set(i, existing != null ? existing : operation);
+            if (existing != null) continue;
+
+            Optional<ServerContainer> container = prepareStart(ranch, serverName);
+            if (container.isEmpty()) {
+                operation.complete(LifecycleResult.failed(name, LifecycleResult.Outcome.FAILED,
+                        CerebrumError.of(CerebrumReason.SERVER_ERROR, "Server not registered in ranch " + ranch.getName() + "."), startedAt));
+                continue;
+            }
+            local.add(container.get());
+            operations.add(operation);
         }
 
-        String qualifiedName = ranchName + "-" + serverName;
-        for (String worker : ranch.getWorkers()) {
-            if (qualifiedName.startsWith(ranch.getName() + "-" + worker)) {
-                Logger.info("Starting worker container " + ranch.getName() + "-" + serverName + "...");
-                ranch.registerWorker(qualifiedName, worker, ServerContainer.Type.WORKER, false, false).start();
-                return CerebrumError.of(CerebrumReason.OK, null);
+        if (!forwarded.isEmpty())
+            messenger.publish(new StartServersMessage(uuid, forwarded, idempotencyKey));
+
+        List<CompletableFuture<AdmissionController.Ticket>> tickets = admission.admitAll(local.stream().map(ServerContainer::getName).toList());
+        for (int i = 0; i < local.size(); i++)
+            launch(local.get(i), tickets.get(i), operations.get(i), startedAt);
+        return results;
+    }
+
+    /**
+     * Keyed by the server name, except for worker templates that always get a new instance, and by the idempotency key.
+     *
+     * @return the start already in progress, or null if {@code operation} has been registered and must be performed
+     */
+    private CompletableFuture<LifecycleResult> track(Ranch ranch, String serverName, String idempotencyKey, CompletableFuture<LifecycleResult> operation) {
+        String qualifiedName = ranch.getName() + "-" + serverName;
+        String key = idempotencyKey == null ? null : "key:" + idempotencyKey;
+        String name = isTemplate(ranch, qualifiedName) ? null : qualifiedName;
+
+        CompletableFuture<LifecycleResult> existing = key == null ? null : inFlight.putIfAbsent(key, operation);
+        if (existing == null && name != null) {
+            existing = inFlight.putIfAbsent(name, operation);
+            if (existing != null && key != null)
+                inFlight.remove(key, operation);
+        }
+        if (existing != null) {
+            metrics.counter("lifecycle.deduplicated").increment();
+            Logger.info("Start of " + qualifiedName + " is already in progress, attaching to it");
+            return existing;
+        }
+
+        long retention = node.getLong("lifecycle.idempotency-ttl", 300);
+        operation.whenComplete((result, throwable) -> {
+            if (name != null)
+                inFlight.remove(name, operation);
+            if (key == null) return;
+            if (retention > 0)
+                scheduler.asyncLater(() -> inFlight.remove(key, operation), retention, TimeUnit.SECONDS);
+            else
+                inFlight.remove(key, operation);
+        });
+        return null;
+    }
+
+    /**
+     * @return the start in progress, starts with an idempotency key are kept {@code lifecycle.idempotency-ttl} seconds
+     */
+    public Optional<CompletableFuture<LifecycleResult>> findStart(String qualifiedName, String idempotencyKey) {
+        return Optional.ofNullable(inFlight.get(idempotencyKey != null ? "key:" + idempotencyKey : qualifiedName));
+    }
+
+    private boolean isTemplate(Ranch ranch, String qualifiedName) {
+        return nameIndex.match(qualifiedName)
+                .filter(match -> match.getRanch() == ranch && match.getSpec().getType() == ServerContainer.Type.WORKER)
+                .map(match -> match.isExact(qualifiedName))
+                .orElse(false);
+    }
+
+    private static void pipe(CompletableFuture<LifecycleResult> source, CompletableFuture<LifecycleResult> target) {
+        source.whenComplete((result, throwable) -> {
+            if (throwable != null)
+                target.completeExceptionally(throwable);
+            else
+                target.complete(result);
+        });
+    }
+
+    /**
+     * @return the result of handing the start to Docker, {@code operation} is completed once the server is loaded
+     */
+    private CompletableFuture<CerebrumError> launch(ServerContainer server, CompletableFuture<AdmissionController.Ticket> admitted,
+                                                    CompletableFuture<LifecycleResult> operation, long startedAt) {
+        long timeout = node.getLong("lifecycle.start-timeout", 180);
+        CompletableFuture<CerebrumError> started = admitted.handleAsync((ticket, throwable) -> throwable != null
+                ? CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + server.getName() + " was not admitted to start in time.")
+                : server.start(ticket), executor);
+        pipe(started.thenCompose(error -> {
+            if (error.code() != CerebrumReason.OK)
+                return CompletableFuture.completedFuture(LifecycleResult.failed(server.getName(), LifecycleResult.Outcome.FAILED, error, startedAt));
+            return server.awaitLoaded()
+                    .orTimeout(timeout, TimeUnit.SECONDS)
+                    .handle((unused, throwable) -> {
+                        // The slot is held exactly as long as the start may still succeed
+                        admitted.thenAccept(AdmissionController.Ticket::release);
+                        return complete(server, LifecycleResult.Outcome.LOADED, throwable, timeout, startedAt);
+                    });
+        }), operation);
+        return started;
+    }
+
+    /**
+     * @return a future completed once the container is gone, or when the stop fails or times out
+     */
+    public CompletableFuture<LifecycleResult> stopAsync(String ranchName, String serverName) {
+        long startedAt = System.currentTimeMillis();
+        Optional<ServerContainer> container = getRanch(ranchName).flatMap(ranch -> ranch.getServer(serverName));
+        if (container.isEmpty())
+            return CompletableFuture.completedFuture(LifecycleResult.failed(ranchName + "-" + serverName, LifecycleResult.Outcome.FAILED,
+                    CerebrumError.of(CerebrumReason.SERVER_ERROR, "Server not registered in ranch " + ranchName + "."), startedAt));
+
+        ServerContainer server = container.get();
+        long timeout = node.getLong("lifecycle.stop-timeout", 60);
+        return CompletableFuture.supplyAsync(server::stop, executor).thenCompose(error -> {
+            if (error.code() != CerebrumReason.OK && server.isRunning())
+                return CompletableFuture.completedFuture(LifecycleResult.failed(server.getName(), LifecycleResult.Outcome.FAILED, error, startedAt));
+            return server.awaitGone()
+                    .orTimeout(timeout, TimeUnit.SECONDS)
+                    .handle((unused, throwable) -> complete(server, LifecycleResult.Outcome.STOPPED, throwable, timeout, startedAt));
+        });
+    }
+
+    private LifecycleResult complete(ServerContainer server, LifecycleResult.Outcome outcome, Throwable throwable, long timeout, long startedAt) {
+        if (throwable == null)
+            return LifecycleResult.of(server.getName(), outcome, startedAt);
+
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (cause instanceof TimeoutException)
+            return LifecycleResult.failed(server.getName(), LifecycleResult.Outcome.TIMED_OUT,
+                    CerebrumError.of(CerebrumReason.SERVER_ERROR, server.getName() + " is not " + outcome.toString().toLowerCase() + " after " + timeout + "s"), startedAt);
+        return LifecycleResult.failed(server.getName(), LifecycleResult.Outcome.FAILED, CerebrumError.of(CerebrumReason.SERVER_ERROR, cause.getMessage()), startedAt);
+    }
+
+    private CerebrumError forward(String ranchName, String serverName, boolean flush, String idempotencyKey) {
+        if (flush) {
+            messenger.publish(new StartServerMessage(uuid, ranchName, serverName, idempotencyKey));
+            return CerebrumError.of(CerebrumReason.OK, null); // Flush is intentional so OK is returned
+        }
+        return CerebrumError.of(CerebrumReason.RANCH_ERROR, "No ranches registered.");
+    }
+
+    private Optional<ServerContainer> prepareStart(Ranch ranch, String serverName) {
+        String qualifiedName = ranch.getName() + "-" + serverName;
+        Optional<ContainerNameIndex.Match> match = nameIndex.match(qualifiedName)
+                .filter(found -> found.getRanch() == ranch && found.getSpec().getType() == ServerContainer.Type.WORKER);
+        if (match.isPresent()) {
+            String worker = match.get().getSpec().getPatternName();
+            if (match.get().isExact(qualifiedName)) {
+                // No instance name requested, any instance of the worker will do
+                ServerContainer container = ranch.claimWorker(worker);
+                Logger.info("Starting worker container " + container.getName() + "...");
+                return Optional.of(container);
             }
+
+            Logger.info("Starting worker container " + qualifiedName + "...");
+            // A named instance already registered (e.g. discovered or stopped) is started again as it is
+            Optional<ServerContainer> registered = ranch.getServer(serverName);
+            if (registered.isPresent())
+                return registered;
+            return Optional.of(ranch.registerWorker(qualifiedName, worker, ServerContainer.Type.WORKER, false, false));
         }
 
         Optional<ServerContainer> container = ranch.getServer(serverName);
         if (container.isEmpty()) {
-            Logger.warn("Operation (start) failed, " + serverName + " in ranch " + ranchName + " is not registered.");
-            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Server not registered in ranch " + ranchName + ".");
+            Logger.warn("Operation (start) failed, " + serverName + " in ranch " + ranch.getName() + " is not registered.");
+            return Optional.empty();
         }
 
-        Logger.info("Starting container " + ranch.getName() + "-" + serverName + "...");
-        return container.get().start();
+        Logger.info("Starting container " + qualifiedName + "...");
+        return container;
     }
 
     public CerebrumError stopServer(String ranchName, String serverName) {
@@ -196,7 +739,54 @@ public class DockerService {
         return CerebrumError.of(CerebrumReason.OK, null);
     }
 
-    public void recalculateConfiguration() {
+    public void containerCreated(DockerEndpoint endpoint, String containerName) {
+        nameIndex.match(containerName).ifPresent(match -> {
+            Ranch ranch = match.getRanch();
+            if (ranch.getServer(containerName.substring(ranch.getName().length() + 1)).isEmpty())
+                ranch.discover(containerName, match.getSpec(), endpoint, false);
+        });
+    }
+
+    public void containerStarted(DockerEndpoint endpoint, String containerName) {
+        resolve(endpoint, containerName).ifPresent(container -> container.setRunning(true));
+    }
+
+    public void containerDied(DockerEndpoint endpoint, String containerName, String exitCode) {
+        resolve(endpoint, containerName).ifPresent(container -> {
+            if (container.isRunning())
+                Logger.warn("Container " + containerName + " died (exit code " + exitCode + ")");
+            container.setRunning(false);
+            container.setLoaded(false);
+        });
+    }
+
+    public void containerDestroyed(DockerEndpoint endpoint, String containerName) {
+        resolveRanch(containerName).ifPresent(ranch -> {
+            String serverName = containerName.substring(ranch.getName().length() + 1);
+            ranch.getServer(serverName).filter(container -> container.getEndpoint() == endpoint).ifPresent(container -> {
+                container.setRunning(false);
+                container.setLoaded(false);
+                // Workers are auto removed, their entry would stay around forever
+                if (container.getType() == ServerContainer.Type.WORKER)
+                    ranch.unregister(serverName);
+            });
+        });
+    }
+
+    private Optional<Ranch> resolveRanch(String containerName) {
+        return nameIndex.match(containerName).map(ContainerNameIndex.Match::getRanch);
+    }
+
+    /**
+     * Events of a daemon only apply to the containers placed on it, a name may exist on several daemons.
+     */
+    private Optional<ServerContainer> resolve(DockerEndpoint endpoint, String containerName) {
+        return resolveRanch(containerName)
+                .flatMap(ranch -> ranch.getServer(containerName.substring(ranch.getName().length() + 1)))
+                .filter(container -> container.getEndpoint() == endpoint);
+    }
+
+    public synchronized void recalculateConfiguration() {
         ranches.clear();
         findRanches();
     }
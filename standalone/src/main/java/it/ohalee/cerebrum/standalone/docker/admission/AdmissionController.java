@@ -0,0 +1,174 @@
+package it.ohalee.cerebrum.standalone.docker.admission;
+
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.metrics.Histogram;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Paces container starts, so that a mass start does not turn into a disk and CPU storm on the host.
+ * <p>
+ * A start needs a token, refilled at {@code rate} per second up to {@code burst}, and a free slot among the
+ * {@code max-starting} containers allowed to be started but not loaded yet. Requests that cannot be admitted
+ * wait in FIFO order, for at most {@code max-wait} seconds.
+ */
+public class AdmissionController {
+
+    private final CerebrumScheduler scheduler;
+    private final double rate;
+    private final double burst;
+    private final int maxStarting;
+    private final long maxWait;
+    private final Histogram waitTime;
+
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefill;
+    private int starting;
+    private boolean pumpScheduled;
+
+    public AdmissionController(CerebrumScheduler scheduler, CerebrumConfigurationNode section, MetricsRegistry metrics) {
+        this.scheduler = scheduler;
+        this.rate = section.getDouble("rate", 2);
+        this.burst = Math.max(1, section.getDouble("burst", 5));
+        this.maxStarting = section.getInteger("max-starting", 8);
+        this.maxWait = section.getLong("max-wait", 300);
+        this.waitTime = metrics.histogram("admission.wait");
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+
+        metrics.gauge("admission.queued", this::getQueued);
+        metrics.gauge("admission.starting", this::getStarting);
+    }
+
+    /**
+     * @return a future completed with a ticket once the start may proceed, or exceptionally after {@code max-wait}
+     */
+    public CompletableFuture<Ticket> admit(String name) {
+        Pending pending = new Pending(name, System.nanoTime(), new CompletableFuture<>());
+        synchronized (this) {
+            queue.add(pending);
+        }
+        expire(pending);
+        pump();
+        return pending.future;
+    }
+
+    /**
+     * Queues many start requests next to each other.
+     */
+    public List<CompletableFuture<Ticket>> admitAll(List<String> names) {
+        List<Pending> added = new ArrayList<>(names.size());
+        synchronized (this) {
+            for (String name : names) {
+                Pending pending = new Pending(name, System.nanoTime(), new CompletableFuture<>());
+                queue.add(pending);
+                added.add(pending);
+            }
+        }
+        added.forEach(this::expire);
+        pump();
+        return added.stream().map(Pending::future).toList();
+    }
+
+    private void expire(Pending pending) {
+        pending.future.orTimeout(maxWait, TimeUnit.SECONDS).whenComplete((ticket, throwable) -> {
+            if (throwable == null) return;
+            // Timed out or cancelled, the queue only holds live requests
+            synchronized (this) {
+                queue.remove(pending);
+            }
+        });
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public synchronized int getStarting() {
+        return starting;
+    }
+
+    public String describe() {
+        return "Admission: " + getQueued() + " queued, " + getStarting() + (maxStarting > 0 ? "/" + maxStarting : "")
+                + " starting, wait p50 " + waitTime.percentile(0.5) + "ms p95 " + waitTime.percentile(0.95) + "ms";
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate <= 0) {
+            tokens = burst;
+        } else {
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1_000_000_000D * rate);
+        }
+        lastRefill = now;
+    }
+
+    private void pump() {
+        List<Pending> admitted = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            while (!queue.isEmpty() && (maxStarting <= 0 || starting < maxStarting) && tokens >= 1) {
+                Pending pending = queue.poll();
+                if (pending.future.isDone()) continue; // Timed out, not removed yet
+
+                tokens -= 1;
+                starting++;
+                admitted.add(pending);
+            }
+
+            if (!queue.isEmpty() && tokens < 1 && !pumpScheduled && rate > 0) {
+                pumpScheduled = true;
+                long delay = (long) Math.ceil((1 - tokens) / rate * 1000);
+                scheduler.asyncLater(() -> {
+                    synchronized (this) {
+                        pumpScheduled = false;
+                    }
+                    pump();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        for (Pending pending : admitted) {
+            Ticket ticket = new Ticket(pending.name);
+            waitTime.recordNanos(pending.queuedAt);
+            if (!pending.future.complete(ticket))
+                ticket.release();
+        }
+    }
+
+    private record Pending(String name, long queuedAt, CompletableFuture<Ticket> future) {
+    }
+
+    /**
+     * A slot among the starting containers, to be released once the container is loaded or has failed.
+     */
+    public final class Ticket {
+
+        @Getter
+        private final String name;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(String name) {
+            this.name = name;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) return;
+            synchronized (AdmissionController.this) {
+                starting--;
+            }
+            pump();
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package it.ohalee.cerebrum.standalone.docker.autoscale;
+
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import lombok.Getter;
+
+/**
+ * The {@code autoscale} section of a worker: how many free player slots to keep across its instances.
+ * <pre>
+ * autoscale:
+ *   min: 1                   # instances always running
+ *   max: 10
+ *   free-slots: 24           # target of free player slots across the instances
+ *   slots: 12                # player slots of an instance, assumed for instances still starting
+ *   hysteresis: 6            # extra free slots required before scaling down, defaults to half an instance
+ *   scale-up-cooldown: 30    # seconds
+ *   scale-down-cooldown: 300 # seconds, also counted from the last scale up
+ * </pre>
+ */
+@Getter
+public final class AutoscalePolicy {
+
+    private final int min;
+    private final int max;
+    private final int freeSlots;
+    private final int slots;
+    private final int hysteresis;
+    private final long scaleUpCooldown;
+    private final long scaleDownCooldown;
+
+    private AutoscalePolicy(CerebrumConfigurationNode node) {
+        this.min = Math.max(0, node.getInteger("min", 0));
+        this.max = Math.max(min, node.getInteger("max", 10));
+        this.slots = Math.max(1, node.getInteger("slots", 16));
+        this.freeSlots = Math.max(0, node.getInteger("free-slots", slots));
+        this.hysteresis = Math.max(0, node.getInteger("hysteresis", slots / 2));
+        this.scaleUpCooldown = node.getLong("scale-up-cooldown", 30) * 1000;
+        this.scaleDownCooldown = node.getLong("scale-down-cooldown", 300) * 1000;
+    }
+
+    /**
+     * @return the policy, or null if the section is missing
+     */
+    public static AutoscalePolicy compile(CerebrumConfigurationNode node) {
+        return node.getKeys().isEmpty() ? null : new AutoscalePolicy(node);
+    }
+
+}
@@ -0,0 +1,134 @@
+package it.ohalee.cerebrum.standalone.docker.autoscale;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.basement.BasementService;
+import it.ohalee.cerebrum.standalone.basement.PlayerCount;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.rancher.Ranch;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts and stops instances of the workers with an {@link AutoscalePolicy}, so that each keeps about
+ * {@code free-slots} free player slots between {@code min} and {@code max} instances.
+ * <p>
+ * Instances still starting count as {@code slots} free slots, so a start is never repeated while the previous
+ * one loads. Scaling down only stops empty instances, one per {@code scale-down-cooldown}, and only when the slots
+ * left afterwards still exceed the target by {@code hysteresis}, so that the next tick does not scale up again.
+ * Only the ranches managed by this node are scaled.
+ */
+public class Autoscaler {
+
+    private final DockerService dockerService;
+    private final boolean enabled;
+    private final long interval;
+    private final Map<ContainerSpec, State> states = new ConcurrentHashMap<>();
+    private final Counter scaledUp;
+    private final Counter scaledDown;
+    private SchedulerTask task;
+
+    public Autoscaler(DockerService dockerService, CerebrumConfigurationNode section, MetricsRegistry metrics) {
+        this.dockerService = dockerService;
+        this.enabled = section.getBoolean("enabled", true);
+        this.interval = Math.max(1, section.getLong("interval", 10));
+        this.scaledUp = metrics.counter("autoscaler.started");
+        this.scaledDown = metrics.counter("autoscaler.stopped");
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+        task = scheduler.asyncRepeating(this::tick, interval, TimeUnit.SECONDS);
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+    }
+
+    private void tick() {
+        Set<ContainerSpec> scaled = new HashSet<>();
+        for (Ranch ranch : dockerService.getRanches()) {
+            for (ContainerSpec spec : ranch.getSpecs()) {
+                if (spec.getType() != ServerContainer.Type.WORKER || spec.getAutoscale() == null) continue;
+
+                scaled.add(spec);
+                try {
+                    scale(ranch, spec, states.computeIfAbsent(spec, unused -> new State()));
+                } catch (RuntimeException e) {
+                    Logger.severe("Could not autoscale " + ranch.getName() + "-" + spec.getPatternName(), e);
+                }
+            }
+        }
+        // Specs of reloaded or released ranches
+        states.keySet().retainAll(scaled);
+    }
+
+    private void scale(Ranch ranch, ContainerSpec spec, State state) {
+        AutoscalePolicy policy = spec.getAutoscale();
+        String template = ranch.getName() + "-" + spec.getPatternName();
+
+        // Workers are registered from when they are claimed until their container is removed
+        List<ServerContainer> instances = new ArrayList<>();
+        // Empty instances with their free slots, which are what stopping one of them takes away
+        Map<ServerContainer, Integer> empty = new LinkedHashMap<>();
+        int free = 0;
+        for (ServerContainer server : ranch.getServers()) {
+            if (server.getSpec() != spec || server.isStopping()) continue;
+            instances.add(server);
+
+            Optional<PlayerCount> players = server.isLoaded() ? BasementService.playerCount(server.getName()) : Optional.empty();
+            free += players.map(PlayerCount::getFree).orElse(policy.getSlots());
+            if (players.isPresent() && players.get().getOnline() == 0)
+                empty.put(server, players.get().getFree());
+        }
+
+        int count = instances.size();
+        long now = System.currentTimeMillis();
+        if (count < policy.getMin() || (free < policy.getFreeSlots() && count < policy.getMax())) {
+            if (count >= policy.getMin() && now - state.lastScaleUp < policy.getScaleUpCooldown()) return;
+
+            int missingSlots = policy.getFreeSlots() - free;
+            int wanted = Math.max(policy.getMin() - count, (missingSlots + policy.getSlots() - 1) / policy.getSlots());
+            wanted = Math.min(wanted, policy.getMax() - count);
+            if (wanted <= 0) return;
+
+            state.lastScaleUp = now;
+            Logger.info("Autoscaler: starting " + wanted + " " + template + " (" + count + " instances, " + free + " free slots)");
+            for (int i = 0; i < wanted; i++) {
+                scaledUp.increment();
+                dockerService.startAsync(ranch.getName(), spec.getPatternName(), false).thenAccept(result -> {
+                    if (!result.isSuccess())
+                        Logger.warn("Autoscaler could not start " + template + ": " + result.getError().reason());
+                });
+            }
+            return;
+        }
+
+        if (count <= policy.getMin() || empty.isEmpty()) return;
+        Map.Entry<ServerContainer, Integer> candidate = empty.entrySet().iterator().next();
+        boolean surplus = count > policy.getMax() || free - candidate.getValue() >= policy.getFreeSlots() + policy.getHysteresis();
+        if (!surplus) return;
+        if (now - state.lastScaleUp < policy.getScaleDownCooldown() || now - state.lastScaleDown < policy.getScaleDownCooldown()) return;
+
+        ServerContainer victim = candidate.getKey();
+        state.lastScaleDown = now;
+        scaledDown.increment();
+        Logger.info("Autoscaler: stopping " + victim.getName() + " (" + count + " instances, " + free + " free slots)");
+        dockerService.stopAsync(ranch.getName(), victim.getName().substring(ranch.getName().length() + 1));
+    }
+
+    private static class State {
+        private long lastScaleUp;
+        private long lastScaleDown;
+    }
+
+}
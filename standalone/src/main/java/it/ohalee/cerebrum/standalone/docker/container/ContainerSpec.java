@@ -0,0 +1,194 @@
+package it.ohalee.cerebrum.standalone.docker.container;
+
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.InternetProtocol;
+import com.github.dockerjava.api.model.Ports;
+import it.ohalee.cerebrum.app.util.Validate;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.autoscale.AutoscalePolicy;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A leader or worker section of settings.yml, parsed and validated once when the ranch is loaded.
+ * Every container of the section is created from it, only the name changes between instances.
+ */
+@Getter
+public final class ContainerSpec {
+
+    private static final String NAME_PLACEHOLDER = "{name}";
+
+    private final String patternName;
+    private final ServerContainer.Type type;
+    private final String image;
+    private final String serverDirectory;
+    private final String logsTemplate;
+    private final String worldDirectory;
+    private final String network;
+    private final String ipv4;
+    private final String[] env;
+    private final List<ExposedPort> exposedPorts;
+    /**
+     * Host port of every published port, turned into a new {@link Ports} for each container since it is mutable
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<ExposedPort, Integer> portBindings;
+    private final boolean startup;
+    private final int stopGrace;
+    private final int killAfter;
+    private final int pool;
+    private final String endpoint;
+    /**
+     * Memory limit in bytes, 0 if unlimited
+     */
+    private final long memory;
+    /**
+     * CPU limit, 0 if unlimited
+     */
+    private final double cpus;
+    /**
+     * Autoscaling of a worker, null if disabled
+     */
+    private final AutoscalePolicy autoscale;
+    /**
+     * Seconds a worker can stay without players before it is stopped, 0 if never
+     */
+    private final long idleTimeout;
+    /**
+     * Leaders that have to be loaded before this one is started at boot, as names in the same ranch or qualified names
+     */
+    private final List<String> dependsOn;
+    /**
+     * Port answering the Server List Ping inside the container
+     */
+    private final int statusPort;
+
+    private ContainerSpec(String patternName, ServerContainer.Type type, CerebrumConfigurationNode node) {
+        String path = type.toString().toLowerCase() + "." + patternName;
+        this.patternName = patternName;
+        this.type = type;
+        this.image = Validate.notNull(node.getString("image", null), path + ": Image cannot be null");
+        this.serverDirectory = Validate.notNull(node.getString("server", null), path + ": Server directory cannot be null");
+        this.logsTemplate = Validate.notNull(node.getString("logs", null), path + ": Logs folder cannot be null");
+        this.worldDirectory = emptyToNull(node.getString("world", null));
+        this.network = node.getString("net", null);
+        this.ipv4 = emptyToNull(node.getString("ipv4", null));
+
+        String zone = node.getString("timezone", null);
+        this.env = zone == null ? new String[0] : new String[]{"TZ=" + zone};
+
+        List<ExposedPort> exposed = new ArrayList<>();
+        Map<ExposedPort, Integer> bindings = new LinkedHashMap<>();
+        if (node.get("port", null) != null) {
+            int port = node.getInteger("port", 25565);
+            ExposedPort exposedPort = ExposedPort.tcp(port);
+            bindings.put(exposedPort, port);
+            exposed.add(exposedPort);
+        } else if (node.get("ports", null) != null) {
+            for (String portString : node.getStringList("ports", Collections.emptyList())) {
+                String[] args = portString.split(":");
+                ExposedPort exposedPort;
+                int port;
+                if (args.length == 1) {
+                    port = Integer.parseInt(args[0]);
+                    exposedPort = ExposedPort.tcp(port);
+                } else {
+                    port = Integer.parseInt(args[1]);
+                    if (args[0].equals("udp")) {
+                        exposedPort = ExposedPort.udp(port);
+                    } else {
+                        exposedPort = ExposedPort.tcp(port);
+                    }
+                }
+                bindings.put(exposedPort, port);
+                exposed.add(exposedPort);
+            }
+        }
+        this.exposedPorts = Collections.unmodifiableList(exposed);
+        this.portBindings = Collections.unmodifiableMap(bindings);
+
+        this.startup = node.getBoolean("startup", true);
+        this.stopGrace = node.getInteger("stop-grace", 30);
+        this.killAfter = node.getInteger("kill-after", 10);
+        this.pool = node.getInteger("pool", 0);
+        this.endpoint = emptyToNull(node.getString("endpoint", null));
+        this.memory = Math.max(0, node.getLong("memory", 0)) * 1024 * 1024;
+        this.cpus = Math.max(0, node.getDouble("cpus", 0));
+        this.autoscale = type == ServerContainer.Type.WORKER ? AutoscalePolicy.compile(node.section("autoscale")) : null;
+        this.idleTimeout = type == ServerContainer.Type.WORKER ? Math.max(0, node.getLong("idle-timeout", 0)) : 0;
+        this.dependsOn = List.copyOf(node.getStringList("depends-on", Collections.emptyList()));
+        this.statusPort = node.getInteger("status-port", exposedPorts.stream()
+                .filter(exposedPort -> exposedPort.getProtocol() == InternetProtocol.TCP)
+                .mapToInt(ExposedPort::getPort)
+                .findFirst()
+                .orElse(25565));
+    }
+
+    /**
+     * Parses and validates a container section.
+     *
+     * @param patternName the key of the section, e.g. "lobby-1" or "instance"
+     * @param type        whether the section is under "leader" or "worker"
+     * @param node        the section itself
+     * @return the compiled spec
+     * @throws NullPointerException     if a required key is missing
+     * @throws IllegalArgumentException if a port cannot be parsed
+     */
+    public static ContainerSpec compile(String patternName, ServerContainer.Type type, CerebrumConfigurationNode node) {
+        return new ContainerSpec(patternName, type, node);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @return a copy of the environment, the array handed to Docker must not be shared between containers
+     */
+    public String[] getEnv() {
+        return env.clone();
+    }
+
+    public String logsFolder(String name) {
+        return logsTemplate.replace(NAME_PLACEHOLDER, name);
+    }
+
+    /**
+     * HostConfig is mutable and carries the per-instance logs bind, so each container gets its own.
+     */
+    public HostConfig newHostConfig(String name) {
+        HostConfig hostConfig = HostConfig.newHostConfig()
+                .withAutoRemove(true)
+                .withBinds(
+                        Bind.parse(serverDirectory + ":/server"),
+                        Bind.parse(logsFolder(name) + ":/server/logs")
+                );
+        if (ipv4 == null)
+            hostConfig.withNetworkMode(network);
+        if (!portBindings.isEmpty()) {
+            Ports ports = new Ports();
+            portBindings.forEach((exposedPort, hostPort) -> ports.bind(exposedPort, Ports.Binding.bindPort(hostPort)));
+            hostConfig.withPortBindings(ports);
+        }
+        if (memory > 0)
+            hostConfig.withMemory(memory);
+        if (cpus > 0)
+            hostConfig.withNanoCPUs((long) (cpus * 1_000_000_000L));
+        return hostConfig;
+    }
+
+    public String[] entrypoint(String name) {
+        if (worldDirectory != null)
+            return new String[]{"/bin/sh", "start.sh", name, "--docker-world", worldDirectory};
+        return new String[]{"/bin/sh", "start.sh", name};
+    }
+
+}
@@ -0,0 +1,46 @@
+package it.ohalee.cerebrum.standalone.docker.container;
+
+import it.ohalee.cerebrum.app.util.CerebrumError;
+import it.ohalee.cerebrum.app.util.CerebrumReason;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of an asynchronous start or stop, completed once the server really is loaded or gone.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LifecycleResult {
+
+    private final String server;
+    private final Outcome outcome;
+    private final CerebrumError error;
+    private final long durationMillis;
+
+    public static LifecycleResult of(String server, Outcome outcome, long startedAt) {
+        return new LifecycleResult(server, outcome, CerebrumError.of(CerebrumReason.OK, null), System.currentTimeMillis() - startedAt);
+    }
+
+    public static LifecycleResult failed(String server, Outcome outcome, CerebrumError error, long startedAt) {
+        return new LifecycleResult(server, outcome, error, System.currentTimeMillis() - startedAt);
+    }
+
+    public boolean isSuccess() {
+        return error.code() == CerebrumReason.OK;
+    }
+
+    public enum Outcome {
+        LOADED,
+        STOPPED,
+        /**
+         * The ranch is not managed here, the request was sent to the other Cerebrum nodes.
+         */
+        FORWARDED,
+        FAILED,
+        /**
+         * Performed, but the server did not reach the expected state in time.
+         */
+        TIMED_OUT
+    }
+
+}
@@ -1,26 +1,28 @@
 package it.ohalee.cerebrum.standalone.docker.container;
 
 import com.github.dockerjava.api.command.*;
-import com.github.dockerjava.api.model.Bind;
-import com.github.dockerjava.api.model.ExposedPort;
+import com.github.dockerjava.api.exception.ConflictException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.exception.NotModifiedException;
 import com.github.dockerjava.api.model.HostConfig;
-import com.github.dockerjava.api.model.Ports;
 import it.ohalee.basementlib.api.redis.messages.implementation.ServerShutdownMessage;
 import it.ohalee.cerebrum.app.Logger;
 import it.ohalee.cerebrum.app.util.CerebrumError;
 import it.ohalee.cerebrum.app.util.CerebrumReason;
 import it.ohalee.cerebrum.standalone.basement.BasementLoader;
-import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
 import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.admission.AdmissionController;
+import it.ohalee.cerebrum.standalone.docker.endpoint.DockerEndpoint;
+import it.ohalee.cerebrum.standalone.docker.journal.JournalEvent;
+import it.ohalee.cerebrum.standalone.docker.probe.ProbeResult;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
-import it.ohalee.cerebrum.app.util.Validate;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor
 @Getter
@@ -30,146 +32,272 @@ public class ServerContainer {
     private final String name;
     private final String registeredName;
     private final Type type;
-    private List<ExposedPort> exposedPorts = new ArrayList<>();
-    private boolean running = false;
-    private boolean loaded;
-    private CerebrumConfigurationNode containerSection;
+    private volatile boolean running = false;
+    private volatile boolean loaded;
+    private volatile boolean created;
+    private volatile boolean stopping;
+    private volatile long lastStopLatency = -1;
+    private final long registeredAt = System.currentTimeMillis();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompletableFuture<Void> loadedSignal;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompletableFuture<Void> goneSignal;
+    private ContainerSpec spec;
     private HostConfig hostConfig;
-    private String worldDirectory;
-    private String ipv4;
+    /**
+     * The daemon this container lives on
+     */
+    private volatile DockerEndpoint endpoint;
+    private volatile ProbeResult lastProbe;
+    /**
+     * Id given by Docker to the current container, null until it is created or discovered.
+     */
+    private volatile String containerId;
 
-    public void setContainerSection(CerebrumConfigurationNode node) {
-        this.containerSection = node;
+    public void setRunning(boolean running) {
+        boolean wasRunning = this.running;
+        this.running = running;
+        if (running && !wasRunning)
+            DockerService.getJournal().record(name, JournalEvent.STARTED);
+        if (!running) {
+            if (wasRunning)
+                DockerService.getJournal().record(name, JournalEvent.GONE);
+            stopping = false;
+            synchronized (this) {
+                if (loadedSignal != null)
+                    loadedSignal.completeExceptionally(new IllegalStateException("Container " + name + " stopped before loading"));
+                if (goneSignal != null)
+                    goneSignal.complete(null);
+            }
+        }
+    }
 
-        String folder = Validate.notNull(node.getString("logs", null), name + ": Logs folder cannot be null");
-        File logsFolder = new File(folder.replace("{name}", name));
-        if (!logsFolder.exists()) {
-            if (!logsFolder.mkdirs()) {
-                Logger.severe("Cannot create logs folder for container " + name);
+    public void setLoaded(boolean loaded) {
+        boolean wasLoaded = this.loaded;
+        this.loaded = loaded;
+        if (loaded) {
+            if (!wasLoaded)
+                DockerService.getJournal().record(name, JournalEvent.LOADED);
+            synchronized (this) {
+                if (loadedSignal != null)
+                    loadedSignal.complete(null);
             }
         }
+    }
 
-        worldDirectory = node.getString("world", null);
-        ipv4 = node.getString("ipv4", null);
+    /**
+     * @return a future completed once BasementLib reports this server as loaded,
+     * or completed exceptionally if the container stops first
+     */
+    public synchronized CompletableFuture<Void> awaitLoaded() {
+        if (loaded)
+            return CompletableFuture.completedFuture(null);
+        if (loadedSignal == null || loadedSignal.isDone())
+            loadedSignal = new CompletableFuture<>();
+        return loadedSignal.copy();
+    }
 
-        hostConfig = HostConfig.newHostConfig()
-                .withAutoRemove(true)
-                .withBinds(
-                        Bind.parse(Validate.notNull(node.getString("server", null), name + ": Server directory cannot be null") + ":/server"),
-                        Bind.parse(folder.replace("{name}", name) + ":/server/logs")
-                );
+    /**
+     * @return a future completed once the container is no longer running
+     */
+    public synchronized CompletableFuture<Void> awaitGone() {
+        if (!running)
+            return CompletableFuture.completedFuture(null);
+        if (goneSignal == null || goneSignal.isDone())
+            goneSignal = new CompletableFuture<>();
+        return goneSignal.copy();
+    }
 
-        if (ipv4 == null || ipv4.isEmpty()) {
-            hostConfig.withNetworkMode(node.getString("net", null));
-        }
+    public void setSpec(ContainerSpec spec) {
+        this.spec = spec;
 
-        if (node.get("port", null) != null) {
-            int port = node.getInteger("port", 25565);
-            ExposedPort exposedPort = ExposedPort.tcp(port);
-            Ports portBindings = new Ports();
-            portBindings.bind(exposedPort, Ports.Binding.bindPort(port));
-            hostConfig.withPortBindings(portBindings);
-            exposedPorts.add(exposedPort);
-        } else if (node.get("ports", null) != null) {
-            List<String> ports = node.getStringList("ports", Collections.emptyList());
-            Ports portBindings = new Ports();
-            for (String portString : ports) {
-                String[] args = portString.split(":");
-                ExposedPort exposedPort;
-                int port;
-                if (args.length == 1) {
-                    port = Integer.parseInt(args[0]);
-                    exposedPort = ExposedPort.tcp(port);
-                } else {
-                    port = Integer.parseInt(args[1]);
-                    if (args[0].equals("udp")) {
-                        exposedPort = ExposedPort.udp(port);
-                    } else {
-                        exposedPort = ExposedPort.tcp(port);
-                    }
-                }
-                portBindings.bind(exposedPort, Ports.Binding.bindPort(port));
-                exposedPorts.add(exposedPort);
+        File logsFolder = new File(spec.logsFolder(name));
+        if (!logsFolder.exists()) {
+            if (!logsFolder.mkdirs()) {
+                Logger.severe("Cannot create logs folder for container " + name);
             }
-            hostConfig.withPortBindings(portBindings);
         }
+        hostConfig = spec.newHostConfig(name);
     }
 
-    public CerebrumError start() {
-        if (running) {
-            Logger.warn("Operation failed. Container " + name + " is already running.");
-            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + name + " is already running.");
-        }
-
-        String image = Validate.notNull(containerSection.getString("image", null), name + ": Image cannot be null");
+    /**
+     * Creates the container without starting it, attaching it to its network if needed.
+     *
+     * @return the result of the operation
+     */
+    public CerebrumError create() {
+        String image = spec.getImage();
 
-        try (ListImagesCmd cmd = DockerService.getClient().listImagesCmd().withImageNameFilter(image)) {
-            if (cmd.exec().isEmpty()) {
-                Logger.severe(name + ": cannot find image " + image);
-                return CerebrumError.of(CerebrumReason.SERVER_ERROR, name + ": cannot find image " + image);
-            }
+        if (!endpoint.getImageRegistry().isPresent(image)) {
+            Logger.severe(name + ": cannot find image " + image + " on " + endpoint);
+            return CerebrumError.of(CerebrumReason.SERVER_ERROR, name + ": cannot find image " + image + " on " + endpoint);
         }
 
-        try (CreateContainerCmd cmd = DockerService.getClient().createContainerCmd(image)) {
+        try (CreateContainerCmd cmd = endpoint.getClient().createContainerCmd(image)) {
             cmd.withName(name)
                     .withHostName(name)
                     .withHostConfig(hostConfig)
                     .withUser("1000:1000")
-                    .withWorkingDir("/server");
-
-            String zone = containerSection.getString("timezone", null);
-            if (zone != null)
-                cmd.withEnv("TZ=" + zone);
-            if (worldDirectory != null && !worldDirectory.isEmpty())
-                cmd.withEntrypoint("/bin/sh", "start.sh", name, "--docker-world", worldDirectory);
-            else
-                cmd.withEntrypoint("/bin/sh", "start.sh", name);
-            cmd.withStdinOpen(true).withTty(true);
-            if (!exposedPorts.isEmpty())
-                cmd.withExposedPorts(exposedPorts);
-            running = true;
-            cmd.exec();
+                    .withWorkingDir("/server")
+                    .withEnv(spec.getEnv())
+                    .withEntrypoint(spec.entrypoint(name))
+                    .withStdinOpen(true)
+                    .withTty(true);
+            if (!spec.getExposedPorts().isEmpty())
+                cmd.withExposedPorts(spec.getExposedPorts());
+            containerId = cmd.exec().getId();
+        }
 
-            Logger.info("New container " + name + " with image " + image + " is starting...");
-            try (StartContainerCmd startContainerCmd = DockerService.getClient().startContainerCmd(name)) {
-                startContainerCmd.exec();
+        if (spec.getIpv4() != null) {
+            try (ConnectToNetworkCmd connectToNetworkCmd = endpoint.getClient().connectToNetworkCmd()) {
+                connectToNetworkCmd.withNetworkId(spec.getNetwork())
+                        .withContainerId(name)
+                        .exec();
             }
+        }
+        created = true;
+        return CerebrumError.of(CerebrumReason.OK, null);
+    }
 
-            if (ipv4 != null && !ipv4.isEmpty()) {
-                try (ConnectToNetworkCmd connectToNetworkCmd = DockerService.getClient().connectToNetworkCmd()) {
-                    connectToNetworkCmd.withNetworkId(containerSection.getString("net", null))
-                            .withContainerId(name)
-                            .exec();
+    /**
+     * Removes the container from its daemon, it must not be running.
+     *
+     * @return the result of the operation
+     */
+    public CerebrumError remove() {
+        try (RemoveContainerCmd cmd = endpoint.getClient().removeContainerCmd(name)) {
+            cmd.withForce(true).exec();
+        } catch (NotFoundException ignored) {
+            // Already removed
+        } catch (RuntimeException e) {
+            Logger.warn("Could not remove container " + name, e);
+            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Could not remove container " + name + ": " + e.getMessage());
+        }
+        created = false;
+        return CerebrumError.of(CerebrumReason.OK, null);
+    }
+
+    /**
+     * The ticket is released here only if the start fails, otherwise once the server is loaded.
+     */
+    public CerebrumError start(AdmissionController.Ticket ticket) {
+        // Checked and set at once, concurrent starts of the same container must not both reach Docker
+        synchronized (this) {
+            if (running) {
+                ticket.release();
+                Logger.warn("Operation failed. Container " + name + " is already running.");
+                return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + name + " is already running.");
+            }
+            running = true;
+        }
+        // Only once admitted and not running yet, a failed start below is recorded as gone by setRunning(false)
+        DockerService.getJournal().record(name, JournalEvent.START_REQUESTED);
+        try {
+            if (!created) {
+                CerebrumError error = create();
+                if (error.code() != CerebrumReason.OK) {
+                    setRunning(false);
+                    ticket.release();
+                    return error;
                 }
+                // Only recorded here, warm pool containers are created without being asked to start
+                DockerService.getJournal().record(name, JournalEvent.CREATED);
+            }
+
+            Logger.info("New container " + name + " is starting on " + endpoint + "...");
+            try (StartContainerCmd startContainerCmd = endpoint.getClient().startContainerCmd(name)) {
+                startContainerCmd.exec();
             }
+            DockerService.getJournal().record(name, JournalEvent.STARTED);
+            // Auto removed once stopped, the next start has to create it again
+            created = false;
+        } catch (RuntimeException e) {
+            setRunning(false);
+            ticket.release();
+            Logger.severe("Could not start container " + name, e);
+            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Could not start container " + name + ": " + e.getMessage());
         }
+
         return CerebrumError.of(CerebrumReason.OK, null);
     }
 
+    /**
+     * Asks the server to shut down and confirms it in the background: the container is considered stopped
+     * only once it dies or BasementLib reports its removal. If that does not happen within {@code stop-grace}
+     * seconds the container is stopped by Docker, and killed if that fails too.
+     *
+     * @return the result of the request, not of the shutdown itself
+     */
     public CerebrumError stop() {
         if (!running) {
             Logger.warn("Operation failed. Container " + name + " is already stopped.");
             return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + name + " is already stopped.");
         }
-
+        // Checked and set at once, concurrent stops must not both ask for a shutdown and escalate it
+        synchronized (this) {
+            if (stopping) {
+                Logger.warn("Operation failed. Container " + name + " is already stopping.");
+                return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + name + " is already stopping.");
+            }
+            stopping = true;
+        }
+        DockerService.getJournal().record(name, JournalEvent.STOP_REQUESTED);
+        long requestedAt = System.currentTimeMillis();
         if (!loaded) {
-            DockerService.getExecutor().submit(() -> {
-                try (StopContainerCmd stopContainerCmd = DockerService.getClient().stopContainerCmd(name)) {
-                    stopContainerCmd.exec();
-                }
-            });
-            running = false;
-            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "Container " + name + " is running but it is not loaded. It will be stopped.");
+            Logger.warn("Container " + name + " is running but it is not loaded. It will be stopped.");
+            DockerService.getExecutor().submit(() -> escalateStop(requestedAt));
+            return CerebrumError.of(CerebrumReason.OK, null);
         }
 
         Logger.info("Stopping container " + name + "...");
         BasementLoader.get().redisManager().publishMessage(new ServerShutdownMessage(DockerService.SENDER_NAME, name));
-        //Logger.info("Container " + name + " stopped."); todo wait for a confirm? It is not said that the server has really shut down
-        running = false;
         loaded = false;
+
+        int grace = spec.getStopGrace();
+        awaitGone().orTimeout(grace, TimeUnit.SECONDS).whenCompleteAsync((unused, throwable) -> {
+            if (throwable == null) {
+                stopped(requestedAt);
+                return;
+            }
+            Logger.warn("Container " + name + " did not shut down within " + grace + "s, stopping it.");
+            escalateStop(requestedAt);
+        }, DockerService.getExecutor());
         return CerebrumError.of(CerebrumReason.OK, null);
     }
 
+    private void escalateStop(long requestedAt) {
+        try (StopContainerCmd stopContainerCmd = endpoint.getClient().stopContainerCmd(name)) {
+            stopContainerCmd.withTimeout(spec.getKillAfter()).exec();
+        } catch (NotModifiedException | NotFoundException ignored) {
+            // Already stopped or removed
+        } catch (RuntimeException e) {
+            Logger.warn("Could not stop container " + name + ", killing it.", e);
+            try (KillContainerCmd killContainerCmd = endpoint.getClient().killContainerCmd(name)) {
+                killContainerCmd.exec();
+            } catch (NotFoundException | ConflictException ignored) {
+                // Not running anymore
+            } catch (RuntimeException killException) {
+                Logger.severe("Could not kill container " + name, killException);
+                synchronized (this) {
+                    stopping = false;
+                    if (goneSignal != null)
+                        goneSignal.completeExceptionally(new IllegalStateException("Container " + name + " could not be stopped nor killed"));
+                }
+                return;
+            }
+        }
+        setRunning(false);
+        setLoaded(false);
+        stopped(requestedAt);
+    }
+
+    private void stopped(long requestedAt) {
+        lastStopLatency = System.currentTimeMillis() - requestedAt;
+        Logger.info("Container " + name + " stopped in " + lastStopLatency + "ms.");
+    }
+
     public enum Type {
         LEADER, WORKER
     }
@@ -0,0 +1,65 @@
+package it.ohalee.cerebrum.standalone.docker.endpoint;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InfoCmd;
+import com.github.dockerjava.api.model.Info;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.image.ImageRegistry;
+import it.ohalee.cerebrum.standalone.docker.transport.DockerTransport;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import lombok.Getter;
+
+/**
+ * A Docker daemon containers can be placed on, with its own clients and image cache.
+ * Capacity is read from the daemon info and refreshed periodically by the {@link EndpointPool}.
+ */
+@Getter
+public class DockerEndpoint {
+
+    private final String name;
+    private final DockerClient client;
+    private final DockerClient streamingClient;
+    private final DockerClient statsClient;
+    private final ImageRegistry imageRegistry;
+    /**
+     * At most this many instances are placed here, 0 means no limit
+     */
+    private final int maxInstances;
+    private volatile int cpus;
+    private volatile long memory;
+    private volatile boolean healthy = true;
+
+    public DockerEndpoint(String name, CerebrumConfigurationNode section, MetricsRegistry metrics) {
+        this.name = name;
+        this.client = DockerTransport.createClient(section, DockerTransport.REQUEST_CLIENT, name, metrics);
+        this.streamingClient = DockerTransport.createClient(section, DockerTransport.STREAMING_CLIENT, name, metrics);
+        this.statsClient = DockerTransport.createClient(section, DockerTransport.STATS_CLIENT, name, metrics);
+        this.imageRegistry = new ImageRegistry(client);
+        this.maxInstances = section.getInteger("max-instances", 0);
+    }
+
+    /**
+     * Reads the capacity of the daemon, marking the endpoint unhealthy if it cannot be reached.
+     */
+    public void refresh() {
+        try (InfoCmd cmd = client.infoCmd()) {
+            Info info = cmd.exec();
+            cpus = info.getNCPU() == null ? 0 : info.getNCPU();
+            memory = info.getMemTotal() == null ? 0 : info.getMemTotal();
+            if (!healthy)
+                Logger.info("Docker endpoint " + name + " is reachable again");
+            healthy = true;
+        } catch (RuntimeException e) {
+            if (healthy)
+                Logger.warn("Docker endpoint " + name + " is unreachable, no containers will be placed on it", e);
+            healthy = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,44 @@
+package it.ohalee.cerebrum.standalone.docker.endpoint;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * What is already placed on an endpoint, as seen by a single placement decision.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EndpointLoad {
+
+    private final DockerEndpoint endpoint;
+    private int instances;
+    private int patternInstances;
+    private double reservedCpus;
+    private long reservedMemory;
+
+    void add(boolean samePattern, double cpus, long memory) {
+        instances++;
+        if (samePattern) patternInstances++;
+        reservedCpus += cpus;
+        reservedMemory += memory;
+    }
+
+    /**
+     * @return the free share of the scarcest resource, from 0 (full) to 1 (empty)
+     */
+    public double headroom() {
+        double cpuHeadroom = endpoint.getCpus() <= 0 ? 1 : 1 - reservedCpus / endpoint.getCpus();
+        double memoryHeadroom = endpoint.getMemory() <= 0 ? 1 : 1 - (double) reservedMemory / endpoint.getMemory();
+        return Math.min(cpuHeadroom, memoryHeadroom);
+    }
+
+    /**
+     * CPUs can be shared, so only memory and the instance limit are hard constraints.
+     */
+    boolean fits(long memory) {
+        if (!endpoint.isHealthy()) return false;
+        if (endpoint.getMaxInstances() > 0 && instances >= endpoint.getMaxInstances()) return false;
+        return endpoint.getMemory() <= 0 || reservedMemory + memory <= endpoint.getMemory();
+    }
+
+}
@@ -0,0 +1,143 @@
+package it.ohalee.cerebrum.standalone.docker.endpoint;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The Docker daemons managed by this node, from the {@code cerebrum.endpoints} section of settings.yml
+ * (every endpoint takes the keys of the docker section). Without it, the docker section is the only endpoint.
+ * <p>
+ * Containers pinned with an {@code endpoint} key always go there, the others are placed by the configured
+ * {@link PlacementStrategy}. Every container reserves its {@code memory} and {@code cpus}, or the placement
+ * defaults when unset, on the endpoint it is placed on.
+ */
+public class EndpointPool {
+
+    public static final String DEFAULT_ENDPOINT = "local";
+
+    private final Map<String, DockerEndpoint> endpoints = new LinkedHashMap<>();
+    @Getter
+    private final DockerEndpoint defaultEndpoint;
+    @Getter
+    private final PlacementStrategy strategy;
+    private final long refreshInterval;
+    private final long defaultMemory;
+    private final double defaultCpus;
+    private final Supplier<Stream<ServerContainer>> placed;
+    private SchedulerTask task;
+
+    /**
+     * @param node   the node section of settings.yml
+     * @param placed every container currently registered, whichever ranch it belongs to
+     */
+    public EndpointPool(CerebrumConfigurationNode node, MetricsRegistry metrics, Supplier<Stream<ServerContainer>> placed) {
+        CerebrumConfigurationNode section = node.section("endpoints");
+        if (section.getKeys().isEmpty()) {
+            endpoints.put(DEFAULT_ENDPOINT, new DockerEndpoint(DEFAULT_ENDPOINT, node.section("docker"), metrics));
+        } else {
+            for (String name : section.getKeys())
+                endpoints.put(name, new DockerEndpoint(name, section.section(name), metrics));
+        }
+        this.defaultEndpoint = endpoints.values().iterator().next();
+
+        CerebrumConfigurationNode placement = node.section("placement");
+        this.strategy = PlacementStrategy.of(placement.getString("strategy", "least-loaded"));
+        this.refreshInterval = Math.max(1, placement.getLong("refresh", 10));
+        this.defaultMemory = placement.getLong("default-memory", 1024) * 1024 * 1024;
+        this.defaultCpus = placement.getDouble("default-cpus", 1);
+        this.placed = placed;
+
+        for (DockerEndpoint endpoint : endpoints.values())
+            metrics.gauge("endpoint." + endpoint.getName() + ".instances",
+                    () -> placed.get().filter(server -> server.getEndpoint() == endpoint && isPlaced(server)).count());
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        endpoints.values().forEach(DockerEndpoint::refresh);
+        task = scheduler.asyncRepeating(() -> endpoints.values().forEach(DockerEndpoint::refresh), refreshInterval, TimeUnit.SECONDS);
+        if (isDistributed())
+            Logger.info("Placing containers on " + endpoints.keySet() + " (" + strategy.name().toLowerCase(Locale.ROOT) + ")");
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+    }
+
+    public Collection<DockerEndpoint> getEndpoints() {
+        return Collections.unmodifiableCollection(endpoints.values());
+    }
+
+    public Optional<DockerEndpoint> getEndpoint(String name) {
+        return Optional.ofNullable(endpoints.get(name));
+    }
+
+    public boolean isDistributed() {
+        return endpoints.size() > 1;
+    }
+
+    /**
+     * Picks the endpoint for a new container of the given spec. When no endpoint has room left,
+     * the healthy one with the most headroom is overcommitted rather than failing the start.
+     */
+    public synchronized DockerEndpoint place(ContainerSpec spec) {
+        if (spec.getEndpoint() != null) {
+            DockerEndpoint pinned = endpoints.get(spec.getEndpoint());
+            if (pinned != null) return pinned;
+            Logger.warn(spec.getPatternName() + " is pinned to unknown endpoint " + spec.getEndpoint() + ", placing it anywhere");
+        }
+        if (!isDistributed()) return defaultEndpoint;
+
+        List<EndpointLoad> loads = loads(spec);
+        long memory = memoryOf(spec);
+        return strategy.choose(loads, memory).map(EndpointLoad::getEndpoint).orElseGet(() -> {
+            DockerEndpoint fallback = loads.stream()
+                    .filter(load -> load.getEndpoint().isHealthy())
+                    .max(Comparator.comparingDouble(EndpointLoad::headroom))
+                    .map(EndpointLoad::getEndpoint)
+                    .orElse(defaultEndpoint);
+            Logger.warn("No docker endpoint has room for " + spec.getPatternName() + ", overcommitting " + fallback.getName());
+            return fallback;
+        });
+    }
+
+    public List<EndpointLoad> loads(ContainerSpec spec) {
+        Map<DockerEndpoint, EndpointLoad> loads = new LinkedHashMap<>();
+        for (DockerEndpoint endpoint : endpoints.values())
+            loads.put(endpoint, new EndpointLoad(endpoint));
+
+        placed.get().filter(this::isPlaced).forEach(server -> {
+            EndpointLoad load = loads.get(server.getEndpoint());
+            if (load != null)
+                load.add(server.getSpec() == spec, cpusOf(server.getSpec()), memoryOf(server.getSpec()));
+        });
+        return new ArrayList<>(loads.values());
+    }
+
+    /**
+     * Leaders keep their entry while stopped, workers only exist while running or about to start.
+     */
+    private boolean isPlaced(ServerContainer server) {
+        return server.isRunning() || server.getType() == ServerContainer.Type.WORKER;
+    }
+
+    private long memoryOf(ContainerSpec spec) {
+        return spec.getMemory() > 0 ? spec.getMemory() : defaultMemory;
+    }
+
+    private double cpusOf(ContainerSpec spec) {
+        return spec.getCpus() > 0 ? spec.getCpus() : defaultCpus;
+    }
+
+}
@@ -0,0 +1,62 @@
+package it.ohalee.cerebrum.standalone.docker.endpoint;
+
+import it.ohalee.cerebrum.app.Logger;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Picks the endpoint a new container is placed on, among the ones with room for it.
+ */
+public enum PlacementStrategy {
+
+    /**
+     * The endpoint with the most free resources, so that load evens out.
+     */
+    LEAST_LOADED {
+        @Override
+        Comparator<EndpointLoad> order() {
+            return Comparator.comparingDouble(EndpointLoad::headroom).reversed()
+                    .thenComparingInt(EndpointLoad::getInstances);
+        }
+    },
+    /**
+     * The fullest endpoint that still fits, so that whole daemons stay free for large servers or can be drained.
+     */
+    BIN_PACKING {
+        @Override
+        Comparator<EndpointLoad> order() {
+            return Comparator.comparingDouble(EndpointLoad::headroom)
+                    .thenComparing(Comparator.comparingInt(EndpointLoad::getInstances).reversed());
+        }
+    },
+    /**
+     * The endpoint with the fewest instances of the same worker, so that losing a daemon takes down as few as possible.
+     */
+    SPREAD {
+        @Override
+        Comparator<EndpointLoad> order() {
+            return Comparator.comparingInt(EndpointLoad::getPatternInstances)
+                    .thenComparingInt(EndpointLoad::getInstances)
+                    .thenComparing(Comparator.comparingDouble(EndpointLoad::headroom).reversed());
+        }
+    };
+
+    abstract Comparator<EndpointLoad> order();
+
+    public Optional<EndpointLoad> choose(List<EndpointLoad> loads, long memory) {
+        return loads.stream().filter(load -> load.fits(memory)).min(order());
+    }
+
+    public static PlacementStrategy of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            Logger.warn("Unknown placement strategy '" + name + "', using least-loaded");
+            return LEAST_LOADED;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package it.ohalee.cerebrum.standalone.docker.event;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.endpoint.DockerEndpoint;
+import it.ohalee.cerebrum.standalone.docker.image.ImageRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a long-lived subscription to the event stream of a daemon and applies container and image
+ * events as they happen, instead of rescanning the whole container list.
+ * <p>
+ * When the stream breaks it is reopened from the timestamp of the last received event, so
+ * nothing that happened in between is missed. Events are idempotent, replaying the same second twice is harmless.
+ */
+public class DockerEventListener {
+
+    private static final long RECONNECT_DELAY_SECONDS = 5;
+
+    private final DockerService dockerService;
+    private final DockerEndpoint endpoint;
+    private final DockerClient client;
+    private final ImageRegistry imageRegistry;
+    private final CerebrumScheduler scheduler;
+    private volatile long lastEventTime;
+    private volatile Closeable stream;
+    private volatile boolean closed = false;
+
+    public DockerEventListener(DockerService dockerService, DockerEndpoint endpoint, CerebrumScheduler scheduler) {
+        this.dockerService = dockerService;
+        this.endpoint = endpoint;
+        this.client = endpoint.getStreamingClient();
+        this.imageRegistry = endpoint.getImageRegistry();
+        this.scheduler = scheduler;
+        this.lastEventTime = System.currentTimeMillis() / 1000;
+    }
+
+    public synchronized void subscribe() {
+        if (closed) return;
+
+        stream = client.eventsCmd()
+                .withEventTypeFilter(EventType.CONTAINER, EventType.IMAGE)
+                .withSince(String.valueOf(lastEventTime))
+                .exec(new ResultCallback.Adapter<>() {
+                    @Override
+                    public void onStart(Closeable stream) {
+                        super.onStart(stream);
+                        imageRegistry.setTracking(true);
+                    }
+
+                    @Override
+                    public void onNext(Event event) {
+                        handle(event);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        Logger.warn("Docker event stream of " + endpoint + " failed, reconnecting in " + RECONNECT_DELAY_SECONDS + "s", throwable);
+                        disconnected();
+                        super.onError(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        Logger.warn("Docker event stream of " + endpoint + " closed, reconnecting in " + RECONNECT_DELAY_SECONDS + "s");
+                        disconnected();
+                        super.onComplete();
+                    }
+                });
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void disconnected() {
+        imageRegistry.setTracking(false);
+        if (!closed) {
+            scheduler.asyncLater(this::subscribe, RECONNECT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void handle(Event event) {
+        if (event.getTime() != null) {
+            lastEventTime = Math.max(lastEventTime, event.getTime());
+        }
+
+        if (event.getType() == EventType.IMAGE) {
+            imageRegistry.handle(event);
+            return;
+        }
+
+        if (event.getActor() == null || event.getActor().getAttributes() == null) return;
+        String name = event.getActor().getAttributes().get("name");
+        if (name == null || event.getAction() == null) return;
+
+        try {
+            switch (event.getAction()) {
+                case "create" -> dockerService.containerCreated(endpoint, name);
+                case "start" -> dockerService.containerStarted(endpoint, name);
+                case "die" -> dockerService.containerDied(endpoint, name, event.getActor().getAttributes().get("exitCode"));
+                case "oom" -> Logger.warn("Container " + name + " ran out of memory on " + endpoint);
+                case "destroy" -> dockerService.containerDestroyed(endpoint, name);
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            Logger.severe("Could not apply docker event " + event.getAction() + " of " + name, e);
+        }
+    }
+
+}
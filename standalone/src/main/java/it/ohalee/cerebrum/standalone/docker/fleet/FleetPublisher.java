@@ -0,0 +1,139 @@
+package it.ohalee.cerebrum.standalone.docker.fleet;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.basement.BasementLoader;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.rancher.Ranch;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.Histogram;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import org.redisson.api.RBatch;
+import org.redisson.api.RMapAsync;
+import org.redisson.api.RStreamAsync;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the state of the servers of the ranches managed by this node to Redis.
+ * <p>
+ * Every ranch has a {@code cerebrum:fleet:<ranch>} hash from server name to {@link FleetState}, and every change is
+ * appended to the {@code cerebrum:fleet:deltas} stream as server, old state, new state and timestamp. Consumers read
+ * the last id of the stream, then the hashes, and tail the stream from that id. Changes are collected each
+ * {@code interval} milliseconds and written with a single batch, a server changing several times within a tick only
+ * produces one delta.
+ */
+public class FleetPublisher {
+
+    public static final String SNAPSHOT_PREFIX = "cerebrum:fleet:";
+    public static final String DELTAS_KEY = "cerebrum:fleet:deltas";
+
+    private final boolean enabled;
+    private final long interval;
+    private final int streamLength;
+    private final Supplier<Collection<Ranch>> ranches;
+    // Last published state, per ranch and server, only touched by the publishing task
+    private final Map<String, Map<String, FleetState>> published = new HashMap<>();
+    private final Counter deltas;
+    private final Counter failures;
+    private final Histogram flushes;
+    private SchedulerTask task;
+
+    public FleetPublisher(CerebrumConfigurationNode section, MetricsRegistry metrics, Supplier<Collection<Ranch>> ranches) {
+        this.enabled = section.getBoolean("enabled", true);
+        this.interval = Math.max(100, section.getLong("interval", 500));
+        this.streamLength = Math.max(1, section.getInteger("stream-length", 10000));
+        this.ranches = ranches;
+        this.deltas = metrics.counter("fleet.deltas");
+        this.failures = metrics.counter("fleet.failures");
+        this.flushes = metrics.histogram("fleet.flush");
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+        task = scheduler.asyncRepeating(this::tick, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+    }
+
+    private synchronized void tick() {
+        try {
+            publish();
+        } catch (RuntimeException e) {
+            failures.increment();
+            Logger.severe("Fleet state publishing failed", e);
+        }
+    }
+
+    private void publish() {
+        long now = System.currentTimeMillis();
+        RBatch batch = BasementLoader.get().redisManager().redissonClient().createBatch();
+        RStreamAsync<String, String> stream = batch.getStream(DELTAS_KEY, StringCodec.INSTANCE);
+        Map<String, Map<String, FleetState>> current = new HashMap<>();
+        boolean dirty = false;
+        int changes = 0;
+
+        for (Ranch ranch : ranches.get()) {
+            Map<String, FleetState> states = new HashMap<>();
+            for (ServerContainer server : ranch.getServers())
+                states.put(server.getName(), FleetState.of(server));
+            current.put(ranch.getName(), states);
+
+            RMapAsync<String, String> snapshot = batch.getMap(SNAPSHOT_PREFIX + ranch.getName(), StringCodec.INSTANCE);
+            Map<String, FleetState> previous = published.get(ranch.getName());
+            boolean fresh = previous == null;
+            if (fresh) {
+                // First tick since this node took the ranch, whatever another node or a previous run left is replaced
+                snapshot.deleteAsync();
+                previous = Collections.emptyMap();
+                dirty = true;
+            }
+
+            for (Map.Entry<String, FleetState> entry : states.entrySet()) {
+                FleetState old = previous.get(entry.getKey());
+                if (!fresh && old == entry.getValue()) continue;
+
+                snapshot.fastPutAsync(entry.getKey(), entry.getValue().name());
+                if (old != entry.getValue()) {
+                    stream.addAsync(delta(entry.getKey(), old, entry.getValue(), now));
+                    changes++;
+                }
+            }
+            for (Map.Entry<String, FleetState> entry : previous.entrySet()) {
+                if (states.containsKey(entry.getKey())) continue;
+
+                snapshot.fastRemoveAsync(entry.getKey());
+                stream.addAsync(delta(entry.getKey(), entry.getValue(), null, now));
+                changes++;
+            }
+        }
+
+        if (dirty || changes > 0) {
+            long start = System.nanoTime();
+            batch.execute();
+            flushes.recordNanos(start);
+            deltas.add(changes);
+        }
+        // Ranches handed over to another node are dropped, their hash is replaced on the first tick of the new owner
+        published.clear();
+        published.putAll(current);
+    }
+
+    private StreamAddArgs<String, String> delta(String server, FleetState old, FleetState state, long timestamp) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("server", server);
+        fields.put("old", old == null ? "" : old.name());
+        fields.put("new", state == null ? "" : state.name());
+        fields.put("timestamp", String.valueOf(timestamp));
+        return StreamAddArgs.entries(fields).trimNonStrict().maxLen(streamLength).noLimit();
+    }
+}
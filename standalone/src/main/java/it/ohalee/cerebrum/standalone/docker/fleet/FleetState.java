@@ -0,0 +1,32 @@
+package it.ohalee.cerebrum.standalone.docker.fleet;
+
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+
+/**
+ * State of a server as published to Redis.
+ */
+public enum FleetState {
+
+    /**
+     * Registered, its container is not running.
+     */
+    STOPPED,
+    /**
+     * The container is running, the server has not loaded yet.
+     */
+    STARTING,
+    /**
+     * The server has been reported as loaded by BasementLib.
+     */
+    LOADED,
+    /**
+     * The server has been asked to shut down and its container is not gone yet.
+     */
+    STOPPING;
+
+    public static FleetState of(ServerContainer server) {
+        if (server.isStopping()) return STOPPING;
+        if (!server.isRunning()) return STOPPED;
+        return server.isLoaded() ? LOADED : STARTING;
+    }
+}
@@ -0,0 +1,86 @@
+package it.ohalee.cerebrum.standalone.docker.image;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.ListImagesCmd;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the presence of images on the Docker daemon, so that starting a container
+ * does not need an image listing every time.
+ * <p>
+ * Concurrent lookups for the same image share a single request. Only images found are cached, and the whole cache
+ * is dropped whenever the daemon reports that an image was pulled, tagged or removed.
+ */
+public class ImageRegistry {
+
+    private static final Set<String> INVALIDATING_ACTIONS = Set.of("pull", "tag", "untag", "delete", "import", "load");
+
+    private final DockerClient client;
+    private final Map<String, CompletableFuture<Boolean>> images = new ConcurrentHashMap<>();
+    private volatile boolean tracking = false;
+
+    public ImageRegistry(DockerClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Checks whether the given image is available on the daemon.
+     * The first caller performs the lookup, every other caller waits for its result.
+     *
+     * @param image the image reference, as written in settings.yml
+     * @return true if the daemon has the image
+     */
+    public boolean isPresent(String image) {
+        CompletableFuture<Boolean> lookup = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = images.putIfAbsent(image, lookup);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+
+        try (ListImagesCmd cmd = client.listImagesCmd().withImageNameFilter(image)) {
+            boolean present = !cmd.exec().isEmpty();
+            lookup.complete(present);
+            if (!tracking || !present) {
+                // Without the event stream we cannot know when to invalidate, do not cache. Missing images are not
+                // cached either, an image pulled on a daemon whose events are late would keep failing starts
+                images.remove(image, lookup);
+            }
+            return present;
+        } catch (RuntimeException e) {
+            images.remove(image, lookup);
+            lookup.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidateAll() {
+        images.clear();
+    }
+
+    public void handle(Event event) {
+        if (event.getType() == EventType.IMAGE && INVALIDATING_ACTIONS.contains(event.getAction())) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Called by the event listener when the event stream is (re)connected or lost.
+     * While the stream is down nothing is cached, as there is no way to know when to invalidate.
+     */
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        invalidateAll();
+    }
+
+}
@@ -0,0 +1,41 @@
+package it.ohalee.cerebrum.standalone.docker.journal;
+
+/**
+ * Lifecycle steps written to the {@link LifecycleJournal}, the codes are part of the file format.
+ */
+public enum JournalEvent {
+
+    START_REQUESTED(1),
+    CREATED(2),
+    STARTED(3),
+    LOADED(4),
+    STOP_REQUESTED(5),
+    GONE(6);
+
+    private final byte code;
+
+    JournalEvent(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * @return the event with the given code, null if there is none
+     */
+    public static JournalEvent of(byte code) {
+        for (JournalEvent event : values()) {
+            if (event.code == code) return event;
+        }
+        return null;
+    }
+
+    /**
+     * @return whether an operation was in progress when this was the last event of a server
+     */
+    public boolean isPending() {
+        return this == START_REQUESTED || this == CREATED || this == STOP_REQUESTED;
+    }
+}
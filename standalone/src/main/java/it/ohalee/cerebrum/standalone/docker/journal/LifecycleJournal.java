@@ -0,0 +1,237 @@
+package it.ohalee.cerebrum.standalone.docker.journal;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.Histogram;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the lifecycle of the servers, replayed on boot to know which servers were loaded and which
+ * starts and stops were interrupted.
+ * <p>
+ * Events are appended to a memory-mapped segment of {@code segment-size} KB, so they survive a crash of the process
+ * without a system call per event. A record is its length (4 bytes), written last so that a torn record is ignored,
+ * the timestamp (8 bytes), the event code (1 byte) and the UTF-8 server name. When the segment is full, and each
+ * {@code compact-interval} seconds, the last event of every server is written to the snapshot file and the segment
+ * starts over. Replaying a segment already included in the snapshot yields the same state, so a crash in between is safe.
+ */
+public class LifecycleJournal {
+
+    private static final String SEGMENT_FILE = "lifecycle.journal";
+    private static final String SNAPSHOT_FILE = "lifecycle.snapshot";
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long compactInterval;
+    // Last event of every server not gone, guarded by this
+    private final Map<String, JournalEvent> state = new HashMap<>();
+    private volatile Map<String, JournalEvent> recovered = Collections.emptyMap();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private SchedulerTask task;
+    private final Counter appended;
+    private final Histogram compactions;
+
+    public LifecycleJournal(CerebrumConfigurationNode section, MetricsRegistry metrics) {
+        this.enabled = section.getBoolean("enabled", true);
+        this.directory = Paths.get(section.getString("directory", "journal"));
+        this.segmentSize = Math.max(64, section.getInteger("segment-size", 1024)) * 1024;
+        this.compactInterval = Math.max(10, section.getLong("compact-interval", 300));
+        this.appended = metrics.counter("journal.appended");
+        this.compactions = metrics.histogram("journal.compaction");
+    }
+
+    /**
+     * Replays the snapshot and the segment, then compacts them.
+     */
+    public synchronized void open(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+
+        try {
+            Files.createDirectories(directory);
+            readSnapshot();
+            replaySegment();
+            recovered = Map.copyOf(state);
+            compact();
+        } catch (IOException | RuntimeException e) {
+            Logger.severe("Could not open the lifecycle journal, it will not be written", e);
+            release();
+            return;
+        }
+        task = scheduler.asyncRepeating(this::tick, compactInterval, TimeUnit.SECONDS);
+        Logger.info("Lifecycle journal replayed, " + recovered.size() + " servers recovered");
+    }
+
+    public synchronized void close() {
+        if (task != null)
+            task.cancel();
+        if (segment == null) return;
+
+        try {
+            compact();
+        } catch (IOException e) {
+            Logger.warn("Could not compact the lifecycle journal", e);
+        }
+        release();
+    }
+
+    /**
+     * @return the last event of every server as found on boot
+     */
+    public Map<String, JournalEvent> getRecovered() {
+        return recovered;
+    }
+
+    public Optional<JournalEvent> recovered(String server) {
+        return Optional.ofNullable(recovered.get(server));
+    }
+
+    /**
+     * Drops the state found on boot, once it has been used.
+     */
+    public void forgetRecovered() {
+        recovered = Collections.emptyMap();
+    }
+
+    /**
+     * Appends an event, unless it is already the last one of the server.
+     *
+     * @param server the qualified server name
+     */
+    public synchronized void record(String server, JournalEvent event) {
+        if (segment == null) return;
+        if (event == JournalEvent.GONE ? state.remove(server) == null : state.put(server, event) == event) return;
+
+        byte[] name = server.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + Long.BYTES + 1 + name.length;
+        try {
+            if (segment.remaining() < size)
+                compact();
+        } catch (IOException e) {
+            Logger.severe("Could not compact the lifecycle journal, " + server + " " + event + " is not recorded", e);
+            return;
+        }
+        if (segment.remaining() < size) {
+            Logger.warn("Server name " + server + " does not fit in the lifecycle journal");
+            return;
+        }
+
+        int position = segment.position();
+        segment.position(position + Integer.BYTES);
+        segment.putLong(System.currentTimeMillis());
+        segment.put(event.code());
+        segment.put(name);
+        segment.putInt(position, size - Integer.BYTES);
+        appended.increment();
+    }
+
+    private synchronized void tick() {
+        if (segment == null || segment.position() == 0) return;
+        try {
+            compact();
+        } catch (IOException e) {
+            Logger.warn("Could not compact the lifecycle journal", e);
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException("Unsupported lifecycle snapshot version " + version);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String server = in.readUTF();
+                JournalEvent event = JournalEvent.of(in.readByte());
+                if (event != null)
+                    state.put(server, event);
+            }
+        }
+    }
+
+    private void replaySegment() throws IOException {
+        Path file = directory.resolve(SEGMENT_FILE);
+        if (!Files.exists(file)) return;
+
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = existing.map(FileChannel.MapMode.READ_ONLY, 0, existing.size());
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                // Zero is the untouched end of the segment, anything else invalid is a torn record
+                if (length <= Long.BYTES + 1 || length > buffer.remaining()) break;
+
+                buffer.getLong();
+                JournalEvent event = JournalEvent.of(buffer.get());
+                byte[] name = new byte[length - Long.BYTES - 1];
+                buffer.get(name);
+                if (event == null) break;
+
+                String server = new String(name, StandardCharsets.UTF_8);
+                if (event == JournalEvent.GONE)
+                    state.remove(server);
+                else
+                    state.put(server, event);
+            }
+        }
+    }
+
+    /**
+     * Writes the state to a new snapshot, replacing the previous one at once, then starts a new segment.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(state.size());
+            for (Map.Entry<String, JournalEvent> entry : state.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeByte(entry.getValue().code());
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        release();
+        channel = FileChannel.open(directory.resolve(SEGMENT_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        compactions.recordNanos(start);
+    }
+
+    private void release() {
+        if (segment != null)
+            segment.force();
+        segment = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Logger.warn("Could not close the lifecycle journal", e);
+            }
+            channel = null;
+        }
+    }
+}
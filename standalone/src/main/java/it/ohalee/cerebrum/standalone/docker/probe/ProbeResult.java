@@ -0,0 +1,28 @@
+package it.ohalee.cerebrum.standalone.docker.probe;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of a Server List Ping.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProbeResult {
+
+    private final long time;
+    private final boolean success;
+    private final long latencyMillis;
+    private final int online;
+    private final int max;
+    private final String error;
+
+    static ProbeResult success(long latencyMillis, int online, int max) {
+        return new ProbeResult(System.currentTimeMillis(), true, latencyMillis, online, max, null);
+    }
+
+    static ProbeResult failure(String error) {
+        return new ProbeResult(System.currentTimeMillis(), false, -1, 0, 0, error);
+    }
+
+}
@@ -0,0 +1,362 @@
+package it.ohalee.cerebrum.standalone.docker.probe;
+
+import com.github.dockerjava.api.command.InspectContainerCmd;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.Histogram;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks every running container with a Minecraft Server List Ping every {@code interval} seconds, all of them
+ * multiplexed on a single selector thread.
+ * <p>
+ * A successful ping marks a server as loaded even if the BasementLib message was lost, and a loaded server failing
+ * {@code failure-threshold} pings in a row is marked as not loaded anymore. Servers are reached on the address of
+ * their container in its network and on their {@code status-port}.
+ */
+public class StatusProber {
+
+    private static final int MAX_RESPONSE = 256 * 1024;
+    private static final Pattern ONLINE = Pattern.compile("\"online\"\\s*:\\s*(\\d+)");
+    private static final Pattern MAX = Pattern.compile("\"max\"\\s*:\\s*(\\d+)");
+
+    private final boolean enabled;
+    private final long interval;
+    private final long timeout;
+    private final int failureThreshold;
+    private final Supplier<Stream<ServerContainer>> servers;
+    private final Map<ServerContainer, InetSocketAddress> addresses = new ConcurrentHashMap<>();
+    private final Map<ServerContainer, Integer> failures = new ConcurrentHashMap<>();
+    private final Set<ServerContainer> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<ServerContainer> resolving = ConcurrentHashMap.newKeySet();
+    private final Queue<Probe> queued = new ConcurrentLinkedQueue<>();
+    private final Histogram latency;
+    private final Counter failed;
+    private Selector selector;
+    private Thread thread;
+    private SchedulerTask task;
+    private volatile boolean running;
+
+    public StatusProber(CerebrumConfigurationNode section, MetricsRegistry metrics, Supplier<Stream<ServerContainer>> servers) {
+        this.enabled = section.getBoolean("enabled", true);
+        this.interval = Math.max(1, section.getLong("interval", 10));
+        this.timeout = TimeUnit.SECONDS.toNanos(Math.max(1, section.getLong("timeout", 3)));
+        this.failureThreshold = Math.max(1, section.getInteger("failure-threshold", 3));
+        this.servers = servers;
+        this.latency = metrics.histogram("probe.latency");
+        this.failed = metrics.counter("probe.failures");
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            Logger.severe("Could not open the status prober selector", e);
+            return;
+        }
+        running = true;
+        thread = new Thread(this::loop, "cerebrum-prober");
+        thread.setDaemon(true);
+        thread.start();
+        task = scheduler.asyncRepeating(this::schedule, interval, TimeUnit.SECONDS);
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+        running = false;
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    private void schedule() {
+        Set<ServerContainer> live = servers.get()
+                .filter(server -> server.isRunning() && !server.isStopping())
+                .collect(Collectors.toSet());
+        addresses.keySet().retainAll(live);
+        failures.keySet().retainAll(live);
+
+        for (ServerContainer server : live) {
+            InetSocketAddress address = addresses.get(server);
+            if (address != null) {
+                probe(server, address);
+            } else if (resolving.add(server)) {
+                // Inspecting may be slow, it must not hold up the probes of the other servers
+                DockerService.getExecutor().submit(() -> {
+                    try {
+                        InetSocketAddress resolved = resolve(server);
+                        if (resolved != null)
+                            addresses.put(server, resolved);
+                    } finally {
+                        resolving.remove(server);
+                    }
+                });
+            }
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Queues a ping of {@code server} on {@code address} unless one is already in flight, the selector picks it up on
+     * its next wakeup.
+     */
+    void probe(ServerContainer server, InetSocketAddress address) {
+        if (inFlight.add(server))
+            queued.add(new Probe(server, address));
+    }
+
+    /**
+     * @return the address of the container in its network, null if it has none yet (it is retried next tick)
+     */
+    private InetSocketAddress resolve(ServerContainer server) {
+        if (server.getSpec().getIpv4() != null)
+            return new InetSocketAddress(server.getSpec().getIpv4(), server.getSpec().getStatusPort());
+
+        try (InspectContainerCmd cmd = server.getEndpoint().getClient().inspectContainerCmd(server.getName())) {
+            Map<String, ContainerNetwork> networks = cmd.exec().getNetworkSettings().getNetworks();
+            if (networks == null || networks.isEmpty()) return null;
+            ContainerNetwork network = networks.getOrDefault(server.getSpec().getNetwork(), networks.values().iterator().next());
+            if (network.getIpAddress() == null || network.getIpAddress().isEmpty()) return null;
+            return new InetSocketAddress(network.getIpAddress(), server.getSpec().getStatusPort());
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                Probe probe;
+                while ((probe = queued.poll()) != null)
+                    probe.open();
+
+                selector.select(TimeUnit.NANOSECONDS.toMillis(timeout) / 2 + 1);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((Probe) key.attachment()).handle(key);
+                }
+
+                long now = System.nanoTime();
+                for (SelectionKey key : selector.keys()) {
+                    Probe attached = (Probe) key.attachment();
+                    if (key.isValid() && now - attached.startedAt > timeout)
+                        attached.fail("timed out");
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.severe("Status prober loop failed", e);
+            }
+        }
+
+        for (SelectionKey key : selector.keys())
+            ((Probe) key.attachment()).close();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void completed(ServerContainer server, ProbeResult result) {
+        inFlight.remove(server);
+        server.setLastProbe(result);
+        if (result.isSuccess()) {
+            latency.record(result.getLatencyMillis(), TimeUnit.MILLISECONDS);
+            failures.remove(server);
+            if (!server.isLoaded() && server.isRunning() && !server.isStopping()) {
+                Logger.info(server.getName() + " answers status pings, marking it as loaded");
+                server.setLoaded(true);
+            }
+            return;
+        }
+
+        failed.increment();
+        int count = failures.merge(server, 1, Integer::sum);
+        if (count == failureThreshold && server.isLoaded()) {
+            Logger.warn(server.getName() + " failed " + count + " status pings in a row (" + result.getError() + "), marking it as not loaded");
+            server.setLoaded(false);
+        }
+    }
+
+    private class Probe {
+
+        private final ServerContainer server;
+        private final InetSocketAddress address;
+        private final ByteBuffer request;
+        private ByteBuffer response = ByteBuffer.allocate(1024);
+        private SocketChannel channel;
+        private long startedAt;
+        private long sentAt;
+        private boolean done;
+
+        private Probe(ServerContainer server, InetSocketAddress address) {
+            this.server = server;
+            this.address = address;
+            this.request = request(address);
+        }
+
+        private void open() {
+            startedAt = System.nanoTime();
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(address)) {
+                    channel.register(selector, SelectionKey.OP_WRITE, this);
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unchecked ones (e.g. an unresolved address) would otherwise leave the server in flight forever
+                fail(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                } else if (key.isWritable()) {
+                    if (sentAt == 0) sentAt = System.nanoTime();
+                    channel.write(request);
+                    if (!request.hasRemaining())
+                        key.interestOps(SelectionKey.OP_READ);
+                } else if (key.isReadable()) {
+                    read();
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e.getMessage());
+            }
+        }
+
+        private void read() throws IOException {
+            if (!response.hasRemaining()) {
+                if (response.capacity() >= MAX_RESPONSE) {
+                    fail("response too large");
+                    return;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(response.capacity() * 4);
+                response.flip();
+                larger.put(response);
+                response = larger;
+            }
+            if (channel.read(response) < 0) {
+                fail("connection closed");
+                return;
+            }
+
+            // Packet length, packet id 0x00, then the JSON as a string
+            ByteBuffer view = response.duplicate().flip();
+            int length = readVarInt(view);
+            if (length < 0 || view.remaining() < length) return;
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt);
+            if (readVarInt(view) != 0x00) {
+                fail("unexpected packet");
+                return;
+            }
+            int jsonLength = readVarInt(view);
+            if (jsonLength < 0 || jsonLength > view.remaining()) {
+                fail("malformed response");
+                return;
+            }
+            byte[] json = new byte[jsonLength];
+            view.get(json);
+            String status = new String(json, StandardCharsets.UTF_8);
+
+            close();
+            done = true;
+            completed(server, ProbeResult.success(latencyMillis, find(ONLINE, status), find(MAX, status)));
+        }
+
+        private void fail(String error) {
+            if (done) return;
+            done = true;
+            close();
+            completed(server, ProbeResult.failure(error == null ? "unreachable" : error));
+        }
+
+        private void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+
+    }
+
+    private static int find(Pattern pattern, String status) {
+        Matcher matcher = pattern.matcher(status);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Handshake with next state 1 (status) followed by the status request.
+     */
+    private static ByteBuffer request(InetSocketAddress address) {
+        byte[] host = address.getHostString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer handshake = ByteBuffer.allocate(host.length + 16);
+        writeVarInt(handshake, 0x00);
+        writeVarInt(handshake, -1); // Protocol version, -1 as the server only has to answer the status
+        writeVarInt(handshake, host.length);
+        handshake.put(host);
+        handshake.putShort((short) address.getPort());
+        writeVarInt(handshake, 1);
+        handshake.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate(handshake.remaining() + 8);
+        writeVarInt(buffer, handshake.remaining());
+        buffer.put(handshake);
+        writeVarInt(buffer, 1);
+        writeVarInt(buffer, 0x00);
+        return buffer.flip();
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @return the value, or -1 if the buffer does not hold the whole VarInt yet
+     */
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            if (!buffer.hasRemaining()) return -1;
+            byte current = buffer.get();
+            value |= (current & 0x7F) << (7 * i);
+            if ((current & 0x80) == 0) return value;
+        }
+        return -1;
+    }
+
+}
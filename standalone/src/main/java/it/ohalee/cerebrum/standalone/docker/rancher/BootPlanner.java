@@ -0,0 +1,203 @@
+package it.ohalee.cerebrum.standalone.docker.rancher;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
+import it.ohalee.cerebrum.standalone.docker.container.LifecycleResult;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts the {@code startup} leaders of freshly loaded ranches following their {@code depends-on} keys.
+ * <p>
+ * The leaders are sorted into tiers, each tier only depending on the previous ones. A leader is started as soon
+ * as all of its own dependencies are loaded rather than waiting for its whole tier, so the boot takes as long as
+ * the longest dependency chain. Leaders depending on one that failed to load are not started. Leaders depending on
+ * each other are reported and started together, without waiting for each other, once the leaders the cycle depends
+ * on are loaded; whatever depends on a member of the cycle waits for that member as usual.
+ */
+public class BootPlanner {
+
+    private final DockerService dockerService;
+
+    public BootPlanner(DockerService dockerService) {
+        this.dockerService = dockerService;
+    }
+
+    /**
+     * @param ranches the ranches whose leaders have just been registered
+     * @return a future completed once every leader is loaded or given up on
+     */
+    public CompletableFuture<Void> boot(Collection<Ranch> ranches) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        for (Ranch ranch : ranches) {
+            for (ContainerSpec leader : ranch.getLeaders()) {
+                if (!leader.isStartup()) continue;
+                ranch.getServer(leader.getPatternName())
+                        .ifPresent(server -> nodes.put(server.getName(), new Node(ranch, leader, server)));
+            }
+        }
+        if (nodes.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        for (Node node : nodes.values()) {
+            for (String dependency : node.spec.getDependsOn()) {
+                Node resolved = nodes.getOrDefault(node.ranch.getName() + "-" + dependency, nodes.get(dependency));
+                if (resolved == null) {
+                    Logger.warn(node.server.getName() + " depends on " + dependency + ", which is not started by this node at boot. Ignoring it.");
+                    continue;
+                }
+                if (node.dependencies.contains(resolved)) continue;
+                node.dependencies.add(resolved);
+            }
+        }
+
+        List<Component> components = new Tarjan().components(nodes.values());
+        List<List<Component>> tiers = new ArrayList<>();
+        for (Component component : components) {
+            if (component.isCycle())
+                Logger.severe("Leaders " + component.names() + " depend on each other, starting them together once their other dependencies are loaded");
+            while (tiers.size() <= component.tier)
+                tiers.add(new ArrayList<>());
+            tiers.get(component.tier).add(component);
+        }
+        StringBuilder plan = new StringBuilder("Boot plan:");
+        for (int i = 0; i < tiers.size(); i++)
+            plan.append(" tier ").append(i + 1).append(' ').append(tiers.get(i).stream().flatMap(component -> component.names().stream()).toList());
+        Logger.info(plan.toString());
+
+        long startedAt = System.currentTimeMillis();
+        List<CompletableFuture<Boolean>> all = new ArrayList<>();
+        // Components come dependencies first, so the futures of their upstream leaders already exist
+        for (Component component : components) {
+            List<CompletableFuture<Boolean>> upstream = component.upstream.stream().map(node -> node.loaded).toList();
+            for (Node node : component.members) {
+                node.loaded = start(node, upstream);
+                all.add(node.loaded);
+            }
+        }
+        return CompletableFuture.allOf(all.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            long failed = all.stream().filter(loaded -> !loaded.join()).count();
+            Logger.info("Boot plan completed in " + (System.currentTimeMillis() - startedAt) + "ms"
+                    + (failed == 0 ? "" : ", " + failed + " leaders not loaded"));
+        });
+    }
+
+    /**
+     * Starts a leader once the leaders it depends on, outside of its own cycle if any, are loaded.
+     */
+    private CompletableFuture<Boolean> start(Node node, List<CompletableFuture<Boolean>> dependencies) {
+        return CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new)).thenCompose(unused -> {
+            if (dependencies.stream().anyMatch(loaded -> !loaded.join())) {
+                Logger.warn("Not starting " + node.server.getName() + ", one of its dependencies did not load");
+                return CompletableFuture.completedFuture(false);
+            }
+            if (node.server.isRunning())
+                return node.server.awaitLoaded().handle((loaded, throwable) -> throwable == null);
+
+            return dockerService.startAsync(node.ranch.getName(), node.spec.getPatternName(), false).thenApply(result -> {
+                if (!result.isSuccess())
+                    Logger.warn("Boot of " + node.server.getName() + " failed: " + result.getError().reason());
+                return result.getOutcome() == LifecycleResult.Outcome.LOADED;
+            });
+        });
+    }
+
+    /**
+     * Tarjan's algorithm over the dependency edges: leaders depending on each other end up in the same component,
+     * and components are emitted after every component they depend on.
+     */
+    private static class Tarjan {
+
+        private final Map<Node, Integer> index = new HashMap<>();
+        private final Map<Node, Integer> lowLink = new HashMap<>();
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private final Set<Node> onStack = new HashSet<>();
+        private final List<Component> components = new ArrayList<>();
+
+        private List<Component> components(Collection<Node> nodes) {
+            for (Node node : nodes) {
+                if (!index.containsKey(node))
+                    visit(node);
+            }
+            return components;
+        }
+
+        private void visit(Node node) {
+            index.put(node, index.size());
+            lowLink.put(node, index.get(node));
+            stack.push(node);
+            onStack.add(node);
+
+            for (Node dependency : node.dependencies) {
+                if (!index.containsKey(dependency)) {
+                    visit(dependency);
+                    lowLink.put(node, Math.min(lowLink.get(node), lowLink.get(dependency)));
+                } else if (onStack.contains(dependency)) {
+                    lowLink.put(node, Math.min(lowLink.get(node), index.get(dependency)));
+                }
+            }
+
+            if (!lowLink.get(node).equals(index.get(node))) return;
+            List<Node> members = new ArrayList<>();
+            Node member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                members.add(member);
+            } while (member != node);
+            components.add(new Component(members));
+        }
+    }
+
+    private static class Component {
+
+        private final List<Node> members;
+        /**
+         * Leaders outside of this component that its members depend on
+         */
+        private final Set<Node> upstream = new LinkedHashSet<>();
+        private final int tier;
+
+        private Component(List<Node> members) {
+            this.members = members;
+            members.forEach(node -> node.component = this);
+            int tier = 0;
+            for (Node node : members) {
+                for (Node dependency : node.dependencies) {
+                    if (dependency.component == this) continue;
+                    upstream.add(dependency);
+                    tier = Math.max(tier, dependency.component.tier + 1);
+                }
+            }
+            this.tier = tier;
+        }
+
+        private boolean isCycle() {
+            return members.size() > 1 || members.get(0).dependencies.contains(members.get(0));
+        }
+
+        private List<String> names() {
+            return members.stream().map(node -> node.server.getName()).toList();
+        }
+    }
+
+    private static class Node {
+
+        private final Ranch ranch;
+        private final ContainerSpec spec;
+        private final ServerContainer server;
+        private final List<Node> dependencies = new ArrayList<>();
+        private Component component;
+        private CompletableFuture<Boolean> loaded;
+
+        private Node(Ranch ranch, ContainerSpec spec, ServerContainer server) {
+            this.ranch = ranch;
+            this.spec = spec;
+            this.server = server;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package it.ohalee.cerebrum.standalone.docker.rancher;
+
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Prefix trie from qualified container names ({@code ranch-pattern...}) to the ranch and spec they belong to.
+ * A lookup costs one step per character of the name, however many ranches and patterns are configured.
+ * <p>
+ * The index is immutable, it is rebuilt from scratch whenever the configuration is reloaded.
+ */
+public final class ContainerNameIndex {
+
+    private final Node root = new Node();
+
+    public ContainerNameIndex(Collection<Ranch> ranches) {
+        for (Ranch ranch : ranches) {
+            for (ContainerSpec spec : ranch.getSpecs()) {
+                insert(ranch.getName() + "-" + spec.getPatternName(), new Match(ranch, spec));
+            }
+        }
+    }
+
+    private void insert(String prefix, Match match) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        node.match = match;
+    }
+
+    /**
+     * Finds the pattern a container name belongs to. When more patterns are prefixes of the
+     * name (e.g. {@code lobby} and {@code lobby-1}) the longest one wins.
+     *
+     * @param containerName the qualified container name, without the leading slash
+     * @return the matching ranch and spec, if any
+     */
+    public Optional<Match> match(String containerName) {
+        Node node = root;
+        Match best = null;
+        for (int i = 0; i < containerName.length(); i++) {
+            node = node.children.get(containerName.charAt(i));
+            if (node == null) break;
+            if (node.match != null) best = node.match;
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(2);
+        private Match match;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Match {
+        private final Ranch ranch;
+        private final ContainerSpec spec;
+
+        /**
+         * @return whether the name is exactly the pattern, without any instance suffix
+         */
+        public boolean isExact(String containerName) {
+            return containerName.length() == ranch.getName().length() + 1 + spec.getPatternName().length();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package it.ohalee.cerebrum.standalone.docker.rancher;
+
+import it.ohalee.cerebrum.app.util.CerebrumError;
+import it.ohalee.cerebrum.app.util.CerebrumReason;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Per-server results of an operation run on many containers at once.
+ */
+public class OperationReport {
+
+    private final String operation;
+    private final Map<String, CerebrumError> results = new ConcurrentSkipListMap<>();
+
+    public OperationReport(String operation) {
+        this.operation = operation;
+    }
+
+    public static OperationReport failed(String operation, String target, CerebrumError error) {
+        OperationReport report = new OperationReport(operation);
+        report.add(target, error);
+        return report;
+    }
+
+    public void add(String server, CerebrumError result) {
+        results.put(server, result);
+    }
+
+    public void merge(OperationReport other) {
+        results.putAll(other.results);
+    }
+
+    public Map<String, CerebrumError> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    public long failures() {
+        return results.values().stream().filter(error -> error.code() != CerebrumReason.OK).count();
+    }
+
+    public String format(String successValue) {
+        long failures = failures();
+        if (failures == 0)
+            return successValue + " (" + results.size() + " servers)";
+
+        StringBuilder builder = new StringBuilder(operation)
+                .append(": ").append(failures).append(" of ").append(results.size()).append(" failed\n");
+        results.forEach((server, error) -> {
+            if (error.code() != CerebrumReason.OK)
+                builder.append("  ").append(server).append(": ").append(error.reason()).append("\n");
+        });
+        return builder.toString();
+    }
+
+}
@@ -5,23 +5,53 @@ import it.ohalee.cerebrum.app.Logger;
 import it.ohalee.cerebrum.app.util.CerebrumError;
 import it.ohalee.cerebrum.app.util.CerebrumReason;
 import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ContainerSpec;
 import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.endpoint.DockerEndpoint;
+import it.ohalee.cerebrum.standalone.docker.journal.JournalEvent;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class Ranch {
 
     @Getter
     private final String name;
     private final Map<String, ServerContainer> servers = new ConcurrentHashMap<>();
-    private CerebrumConfigurationNode ranchSection;
+    private final Map<String, ContainerSpec> leaders = new LinkedHashMap<>();
+    private final Map<String, ContainerSpec> workers = new LinkedHashMap<>();
+    private final Map<String, WorkerPool> pools = new HashMap<>();
+    private final AtomicInteger workerSequence = new AtomicInteger();
+    private final Semaphore operationPermits;
 
     public Ranch(String name, CerebrumConfigurationNode node) {
         this.name = name;
-        this.ranchSection = node;
+        this.operationPermits = new Semaphore(Math.max(1, node.getInteger("concurrency", 4)));
+
+        compileSpecs(node, ServerContainer.Type.LEADER, leaders);
+        compileSpecs(node, ServerContainer.Type.WORKER, workers);
+        for (ContainerSpec worker : workers.values()) {
+            if (worker.getPool() > 0)
+                pools.put(worker.getPatternName(), new WorkerPool(this, worker.getPatternName(), worker.getPool()));
+        }
+    }
+
+    private void compileSpecs(CerebrumConfigurationNode node, ServerContainer.Type type, Map<String, ContainerSpec> specs) {
+        String typeName = type.toString().toLowerCase();
+        for (String patternName : node.section(typeName).getKeys()) {
+            try {
+                specs.put(patternName, ContainerSpec.compile(patternName, type, node.section(typeName + "." + patternName)));
+            } catch (RuntimeException e) {
+                Logger.severe(name + "." + typeName + "." + patternName + " is not valid and will be ignored: " + e.getMessage());
+            }
+        }
     }
 
     public Collection<ServerContainer> getServers() {
@@ -29,15 +59,67 @@ public class Ranch {
     }
 
     public ServerContainer registerWorker(String name, String workerName, ServerContainer.Type type, boolean running, boolean loaded) {
-        return registerContainer(name, workerName, type, ranchSection.section("worker." + workerName), running, loaded);
+        ContainerSpec spec = workers.get(workerName);
+        return registerContainer(name, spec, DockerService.getEndpoints().place(spec), running, loaded);
+    }
+
+    /**
+     * Registers an instance of the given worker with a generated name, taking it from the warm pool when possible.
+     *
+     * @param workerName the worker pattern
+     * @return the registered container, ready to be started
+     */
+    public ServerContainer claimWorker(String workerName) {
+        WorkerPool pool = pools.get(workerName);
+        Optional<ServerContainer> pooled = pool == null ? Optional.empty() : pool.claim();
+        pooled.ifPresent(this::register);
+        return pooled.orElseGet(() -> registerWorker(nextWorkerName(workerName), workerName, ServerContainer.Type.WORKER, false, false));
+    }
+
+    public void fillPools() {
+        pools.values().forEach(WorkerPool::refill);
+    }
+
+    public Optional<WorkerPool> getPool(String workerName) {
+        return Optional.ofNullable(pools.get(workerName));
+    }
+
+    String nextWorkerName(String workerName) {
+        String containerName;
+        do {
+            containerName = name + "-" + workerName + "-p" + workerSequence.incrementAndGet();
+        } while (servers.containsKey(containerName.replace(name + "-", "")) || isPooled(containerName));
+        return containerName;
+    }
+
+    private boolean isPooled(String containerName) {
+        for (WorkerPool pool : pools.values()) {
+            if (pool.isPooled(containerName)) return true;
+        }
+        return false;
+    }
+
+    ServerContainer newContainer(String name, ContainerSpec spec, DockerEndpoint endpoint) {
+        ServerContainer container = new ServerContainer(name, spec.getPatternName(), spec.getType());
+        container.setSpec(spec);
+        container.setEndpoint(endpoint);
+        return container;
+    }
+
+    ServerContainer newWorker(String name, String workerName) {
+        ContainerSpec spec = workers.get(workerName);
+        return newContainer(name, spec, DockerService.getEndpoints().place(spec));
+    }
+
+    private void register(ServerContainer container) {
+        servers.put(container.getName().replace(this.name + "-", ""), container);
     }
 
-    private ServerContainer registerContainer(String name, String registeredName, ServerContainer.Type type, CerebrumConfigurationNode section, boolean running, boolean loaded) {
-        ServerContainer newServerContainer = new ServerContainer(name, registeredName, type);
-        newServerContainer.setContainerSection(section);
+    private ServerContainer registerContainer(String name, ContainerSpec spec, DockerEndpoint endpoint, boolean running, boolean loaded) {
+        ServerContainer newServerContainer = newContainer(name, spec, endpoint);
         newServerContainer.setRunning(running);
         newServerContainer.setLoaded(loaded);
-        servers.put(newServerContainer.getName().replace(this.name + "-", ""), newServerContainer);
+        register(newServerContainer);
         return newServerContainer;
     }
 
@@ -45,68 +127,164 @@ public class Ranch {
         return Optional.ofNullable(servers.get(serverName));
     }
 
-    public void findContainers(List<Container> containers) {
-        Logger.info(name + " containers already started -> " + containers.stream().map(container -> container.getNames()[0]).toList());
-
-        for (ServerContainer.Type containerType : ServerContainer.Type.values()) {
-            for (String containerPatternName : ranchSection.section(containerType.toString().toLowerCase()).getKeys()) {
-                containers.stream()
-                        .filter(container -> container.getNames()[0].substring(1).startsWith(name + "-" + containerPatternName))
-                        .forEach(container -> {
-                                    Logger.info("Container Name -> " + Arrays.toString(container.getNames()) + " -> " + container.getNames()[0].substring(1).replace(name + "-", "") + " status " + container.getState());
-                                    registerContainer(container.getNames()[0].substring(1), containerPatternName,
-                                            containerType, ranchSection.section(containerType.toString().toLowerCase() + "." + containerPatternName),
-                                            container.getState().contains("running"), true);
-                                }
-                        );
+    /**
+     * Registers the containers already on a daemon, as matched by the {@link ContainerNameIndex}.
+     *
+     * @param endpoint   the daemon the containers were found on
+     * @param containers the containers of this ranch, each with the spec its name matches
+     */
+    public void findContainers(DockerEndpoint endpoint, List<Map.Entry<Container, ContainerSpec>> containers) {
+        Logger.info(name + " containers already started on " + endpoint + " -> " + containers.stream().map(entry -> entry.getKey().getNames()[0]).toList());
+
+        for (Map.Entry<Container, ContainerSpec> entry : containers) {
+            Container container = entry.getKey();
+            ContainerSpec spec = entry.getValue();
+            String containerName = container.getNames()[0].substring(1);
+            Logger.info("Container Name -> " + Arrays.toString(container.getNames()) + " -> " + containerName.replace(name + "-", "") + " status " + container.getState());
+
+            // Created or exited containers only need to be started again
+            boolean created = container.getState().equals("created") || container.getState().equals("exited");
+            WorkerPool pool = pools.get(spec.getPatternName());
+            if (container.getState().equals("created") && spec.getType() == ServerContainer.Type.WORKER && pool != null) {
+                ServerContainer pooled = newContainer(containerName, spec, endpoint);
+                pooled.setContainerId(container.getId());
+                pool.adopt(pooled);
+                continue;
             }
+            boolean running = container.getState().contains("running");
+            // The journal knows whether the server had loaded, without an entry a running container is assumed loaded
+            boolean loaded = running && DockerService.getJournal().recovered(containerName)
+                    .map(event -> event == JournalEvent.LOADED || event == JournalEvent.STOP_REQUESTED)
+                    .orElse(true);
+            ServerContainer registered = registerContainer(containerName, spec, endpoint, running, loaded);
+            registered.setCreated(created);
+            registered.setContainerId(container.getId());
+        }
+    }
+
+    /**
+     * Registers a container that appeared after the initial discovery.
+     *
+     * @param containerName the qualified container name
+     * @param spec          the spec its name matches
+     * @param endpoint      the daemon it appeared on
+     * @param running       whether the container is currently running
+     */
+    public void discover(String containerName, ContainerSpec spec, DockerEndpoint endpoint, boolean running) {
+        if (isPooled(containerName)) return;
+        registerContainer(containerName, spec, endpoint, running, false);
+    }
+
+    public List<ContainerSpec> getSpecs() {
+        List<ContainerSpec> specs = new ArrayList<>(leaders.values());
+        specs.addAll(workers.values());
+        return specs;
+    }
+
+    public void unregister(String serverName) {
+        servers.remove(serverName);
+    }
+
+    /**
+     * Removes the workers that are neither running nor being stopped and whose container no longer exists,
+     * e.g. failed starts or removals missed while the event stream was down.
+     *
+     * @param exists whether the container of a worker exists on its daemon
+     * @param grace  milliseconds a worker is kept after registering, while its start waits for admission
+     * @return the number of removed entries
+     */
+    public int evictStale(Predicate<ServerContainer> exists, long grace) {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Map.Entry<String, ServerContainer> entry : servers.entrySet()) {
+            ServerContainer server = entry.getValue();
+            if (server.getType() != ServerContainer.Type.WORKER || server.isRunning() || server.isStopping()) continue;
+            if (now - server.getRegisteredAt() < grace || exists.test(server)) continue;
+
+            if (servers.remove(entry.getKey(), server))
+                evicted++;
         }
+        return evicted;
     }
 
+    /**
+     * Registers the leaders not found on any daemon, they are started by the {@link BootPlanner}.
+     */
     public void registerLeaders() {
-        Set<String> keys = ranchSection.section("leader").getKeys();
-        for (String leader : keys) {
-            String name = this.name + "-" + leader;
-            if (servers.containsKey(leader) && servers.get(leader).isRunning()) continue;
-
-            ServerContainer container = registerContainer(name, leader, ServerContainer.Type.LEADER, ranchSection.section("leader." + leader), false, false);
-            if (ranchSection.getBoolean("leader." + leader + ".startup", true)) {
-                container.start();
-            }
+        for (ContainerSpec leader : leaders.values()) {
+            String name = this.name + "-" + leader.getPatternName();
+            // Leaders found on a daemon keep their entry, a created or exited one is started without being created again
+            if (servers.containsKey(leader.getPatternName())) continue;
+
+            registerContainer(name, leader, DockerService.getEndpoints().place(leader), false, false);
             Logger.info("Registered leader -> " + name);
         }
     }
 
+    public Collection<ContainerSpec> getLeaders() {
+        return Collections.unmodifiableCollection(leaders.values());
+    }
+
     public Set<String> getWorkers() {
-        return new HashSet<>(ranchSection.section("worker").getKeys());
+        return Collections.unmodifiableSet(workers.keySet());
+    }
+
+    public OperationReport shutdown() {
+        return forEach("Shutdown of " + name, ServerContainer::isRunning, ServerContainer::stop);
     }
 
-    public CerebrumError shutdown() {
+    /**
+     * Runs an operation on the matching servers of this ranch in parallel, at most
+     * {@code concurrency} (from the ranch section) at a time, and waits for all of them.
+     *
+     * @param operation the name of the operation, used in the report
+     * @param filter    which servers to run the operation on
+     * @param action    the operation
+     * @return the result of every server
+     */
+    public OperationReport forEach(String operation, Predicate<ServerContainer> filter, Function<ServerContainer, CerebrumError> action) {
         if (servers.isEmpty())
-            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "No servers found in this ranch");
+            return OperationReport.failed(operation, name, CerebrumError.of(CerebrumReason.SERVER_ERROR, "No servers found in this ranch"));
 
-        for (ServerContainer value : servers.values()) {
-            CerebrumError error = value.stop();
-            if (error.code() != CerebrumReason.OK) {
-                return error;
-            }
+        OperationReport report = new OperationReport(operation);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (ServerContainer server : servers.values()) {
+            if (!filter.test(server)) continue;
+
+            operationPermits.acquireUninterruptibly();
+            tasks.add(CompletableFuture.runAsync(() -> report.add(server.getName(), action.apply(server)), DockerService.getExecutor())
+                    .exceptionally(throwable -> {
+                        report.add(server.getName(), CerebrumError.of(CerebrumReason.SERVER_ERROR, server.getName() + ": " + throwable.getMessage()));
+                        return null;
+                    })
+                    .whenComplete((unused, throwable) -> operationPermits.release()));
         }
-        return CerebrumError.of(CerebrumReason.OK, null);
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        return report;
     }
 
-    public CerebrumError startLeaders() {
+    /**
+     * Runs an operation that completes asynchronously on the matching servers of this ranch, without holding a thread
+     * while it is in progress.
+     *
+     * @return the result of every server, once all of them completed
+     */
+    public CompletableFuture<OperationReport> forEachAsync(String operation, Predicate<ServerContainer> filter, Function<ServerContainer, CompletableFuture<CerebrumError>> action) {
         if (servers.isEmpty())
-            return CerebrumError.of(CerebrumReason.SERVER_ERROR, "No servers found in this ranch");
-
-        for (ServerContainer value : servers.values()) {
-            if (value.getType() == ServerContainer.Type.LEADER) {
-                CerebrumError error = value.start();
-                if (error.code() != CerebrumReason.OK) {
-                    return error;
-                }
-            }
+            return CompletableFuture.completedFuture(OperationReport.failed(operation, name, CerebrumError.of(CerebrumReason.SERVER_ERROR, "No servers found in this ranch")));
+
+        OperationReport report = new OperationReport(operation);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (ServerContainer server : servers.values()) {
+            if (!filter.test(server)) continue;
+
+            tasks.add(action.apply(server).handle((result, throwable) -> {
+                report.add(server.getName(), throwable == null ? result
+                        : CerebrumError.of(CerebrumReason.SERVER_ERROR, server.getName() + ": " + throwable.getMessage()));
+                return null;
+            }));
         }
-        return CerebrumError.of(CerebrumReason.OK, null);
+        return CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).thenApply(unused -> report);
     }
 
 }
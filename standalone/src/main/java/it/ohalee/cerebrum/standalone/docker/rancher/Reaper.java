@@ -0,0 +1,125 @@
+package it.ohalee.cerebrum.standalone.docker.rancher;
+
+import com.github.dockerjava.api.command.ListContainersCmd;
+import com.github.dockerjava.api.model.Container;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.basement.BasementService;
+import it.ohalee.cerebrum.standalone.basement.PlayerCount;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.docker.endpoint.DockerEndpoint;
+import it.ohalee.cerebrum.standalone.metrics.Counter;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the registered workers tied to the live fleet.
+ * <p>
+ * Workers with an {@code idle-timeout} are stopped once they have been loaded without players for that long,
+ * workers with an {@code autoscale} section are left to the autoscaler. Worker entries whose container no
+ * longer exists are removed after {@code evict-after} seconds.
+ */
+public class Reaper {
+
+    private final DockerService dockerService;
+    private final boolean enabled;
+    private final long interval;
+    private final long evictAfter;
+    private final Map<ServerContainer, Long> emptySince = new ConcurrentHashMap<>();
+    private final Counter reaped;
+    private final Counter evicted;
+    private SchedulerTask task;
+
+    public Reaper(DockerService dockerService, CerebrumConfigurationNode section, MetricsRegistry metrics) {
+        this.dockerService = dockerService;
+        this.enabled = section.getBoolean("enabled", true);
+        this.interval = Math.max(1, section.getLong("interval", 30));
+        this.evictAfter = TimeUnit.SECONDS.toMillis(Math.max(0, section.getLong("evict-after", 600)));
+        this.reaped = metrics.counter("reaper.stopped");
+        this.evicted = metrics.counter("reaper.evicted");
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+        task = scheduler.asyncRepeating(this::tick, interval, TimeUnit.SECONDS);
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+    }
+
+    private void tick() {
+        try {
+            reapIdle();
+            evictStale();
+        } catch (RuntimeException e) {
+            Logger.severe("Reaper tick failed", e);
+        }
+    }
+
+    private void reapIdle() {
+        long now = System.currentTimeMillis();
+        Set<ServerContainer> seen = new HashSet<>();
+        for (Ranch ranch : dockerService.getRanches()) {
+            for (ServerContainer server : ranch.getServers()) {
+                long idleTimeout = server.getSpec().getIdleTimeout();
+                if (idleTimeout <= 0 || server.getSpec().getAutoscale() != null) continue;
+                if (!server.isLoaded() || server.isStopping()) continue;
+
+                Optional<PlayerCount> players = BasementService.playerCount(server.getName());
+                if (players.isEmpty() || players.get().getOnline() > 0) continue;
+
+                seen.add(server);
+                long since = emptySince.computeIfAbsent(server, unused -> now);
+                if (now - since < TimeUnit.SECONDS.toMillis(idleTimeout)) continue;
+
+                reaped.increment();
+                Logger.info("Stopping " + server.getName() + ", without players for " + (now - since) / 1000 + "s");
+                dockerService.stopAsync(ranch.getName(), server.getName().substring(ranch.getName().length() + 1));
+            }
+        }
+        // Servers with players again, stopped or unregistered
+        emptySince.keySet().retainAll(seen);
+    }
+
+    private void evictStale() {
+        Map<DockerEndpoint, Optional<Set<String>>> existing = new HashMap<>();
+        for (Ranch ranch : dockerService.getRanches()) {
+            int removed = ranch.evictStale(server -> existing.computeIfAbsent(server.getEndpoint(), this::containerNames)
+                    .map(names -> names.contains(server.getName()))
+                    .orElse(true), evictAfter);
+            if (removed > 0) {
+                evicted.add(removed);
+                Logger.info("Removed " + removed + " stale workers from " + ranch.getName());
+            }
+        }
+    }
+
+    /**
+     * Listed at most once per tick and only when there are candidates.
+     *
+     * @return the container names, empty if the daemon cannot be reached so that nothing is evicted on a guess
+     */
+    private Optional<Set<String>> containerNames(DockerEndpoint endpoint) {
+        try (ListContainersCmd cmd = endpoint.getClient().listContainersCmd().withShowAll(true)) {
+            Set<String> names = new HashSet<>();
+            for (Container container : cmd.exec()) {
+                if (container.getNames() == null) continue;
+                for (String name : container.getNames())
+                    names.add(name.substring(1));
+            }
+            return Optional.of(names);
+        } catch (RuntimeException e) {
+            Logger.warn("Could not list the containers of " + endpoint + ", skipping eviction", e);
+            return Optional.empty();
+        }
+    }
+
+}
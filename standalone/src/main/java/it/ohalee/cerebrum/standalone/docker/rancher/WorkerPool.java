@@ -0,0 +1,127 @@
+package it.ohalee.cerebrum.standalone.docker.rancher;
+
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.util.CerebrumError;
+import it.ohalee.cerebrum.app.util.CerebrumReason;
+import it.ohalee.cerebrum.standalone.docker.DockerService;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import lombok.Getter;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a number of worker containers already created (and attached to their network) but not started,
+ * so that a start request only has to start one of them.
+ * <p>
+ * Names are baked into a container when it is created, so pooled containers get a generated name
+ * and can only serve requests that do not ask for a specific instance name.
+ */
+public class WorkerPool {
+
+    private final Ranch ranch;
+    @Getter
+    private final String workerName;
+    @Getter
+    private final int size;
+    private final Queue<ServerContainer> ready = new ConcurrentLinkedQueue<>();
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+    private int pending = 0;
+    private int failures = 0;
+    private boolean retryScheduled;
+
+    public WorkerPool(Ranch ranch, String workerName, int size) {
+        this.ranch = ranch;
+        this.workerName = workerName;
+        this.size = size;
+    }
+
+    /**
+     * Takes a ready container out of the pool, the pool is refilled in the background.
+     *
+     * @return a created container, or empty if the pool is exhausted
+     */
+    public Optional<ServerContainer> claim() {
+        ServerContainer container = ready.poll();
+        if (container != null)
+            reserved.remove(container.getName());
+        refill();
+        return Optional.ofNullable(container);
+    }
+
+    /**
+     * Takes back a container found already created on the daemon, e.g. after a restart.
+     * Containers beyond the size of the pool, left by a larger {@code pool} setting, are removed.
+     */
+    public synchronized void adopt(ServerContainer container) {
+        // It exists already, starting it must not create it again
+        container.setCreated(true);
+        if (ready.size() + pending >= size) {
+            Logger.info("Removing pooled worker " + container.getName() + ", the pool of " + workerName + " is full");
+            DockerService.getExecutor().submit(container::remove);
+            return;
+        }
+        reserved.add(container.getName());
+        ready.add(container);
+    }
+
+    public boolean isPooled(String containerName) {
+        return reserved.contains(containerName);
+    }
+
+    public int getReady() {
+        return ready.size();
+    }
+
+    public synchronized void refill() {
+        while (ready.size() + pending < size) {
+            pending++;
+            String name = ranch.nextWorkerName(workerName);
+            reserved.add(name);
+            DockerService.getExecutor().submit(() -> fill(name));
+        }
+    }
+
+    private void fill(String name) {
+        CerebrumError error;
+        ServerContainer container = ranch.newWorker(name, workerName);
+        try {
+            error = container.create();
+        } catch (RuntimeException e) {
+            error = CerebrumError.of(CerebrumReason.SERVER_ERROR, e.getMessage());
+        }
+
+        synchronized (this) {
+            pending--;
+            if (error.code() == CerebrumReason.OK) {
+                failures = 0;
+                ready.add(container);
+            } else {
+                reserved.remove(name);
+                failures++;
+                Logger.warn("Could not pre-create pooled worker " + name + ": " + error.reason());
+                scheduleRetry();
+            }
+        }
+    }
+
+    /**
+     * Refills again after a failed creation, waiting twice as long after every failure in a row up to a minute.
+     */
+    private void scheduleRetry() {
+        if (retryScheduled) return;
+        retryScheduled = true;
+        long delay = Math.min(60, 1L << Math.min(failures, 6));
+        DockerService.getScheduler().asyncLater(() -> {
+            synchronized (this) {
+                retryScheduled = false;
+            }
+            refill();
+        }, delay, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,93 @@
+package it.ohalee.cerebrum.standalone.docker.stats;
+
+import com.github.dockerjava.api.model.BlkioStatEntry;
+import com.github.dockerjava.api.model.CpuStatsConfig;
+import com.github.dockerjava.api.model.StatisticNetworksConfig;
+import com.github.dockerjava.api.model.Statistics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * History of a container, one sample per second for 10 minutes and one per minute for 24 hours.
+ */
+public class ContainerStats {
+
+    private final StatsRing seconds = new StatsRing(600, 1000);
+    private final StatsRing minutes = new StatsRing(1440, 60_000);
+    // Only touched by the stats stream of the container
+    private long lastTime = -1;
+    private long lastNetRx;
+    private long lastNetTx;
+    private long lastBlockRead;
+    private long lastBlockWrite;
+
+    void accept(Statistics statistics) {
+        long now = System.currentTimeMillis();
+        double cpu = cpuPercent(statistics.getCpuStats(), statistics.getPreCpuStats());
+        long memory = statistics.getMemoryStats() == null || statistics.getMemoryStats().getUsage() == null ? 0 : statistics.getMemoryStats().getUsage();
+
+        long netRx = 0, netTx = 0;
+        Map<String, StatisticNetworksConfig> networks = statistics.getNetworks();
+        if (networks != null) {
+            for (StatisticNetworksConfig network : networks.values()) {
+                netRx += network.getRxBytes() == null ? 0 : network.getRxBytes();
+                netTx += network.getTxBytes() == null ? 0 : network.getTxBytes();
+            }
+        }
+
+        long blockRead = 0, blockWrite = 0;
+        List<BlkioStatEntry> entries = statistics.getBlkioStats() == null ? null : statistics.getBlkioStats().getIoServiceBytesRecursive();
+        if (entries != null) {
+            for (BlkioStatEntry entry : entries) {
+                if (entry.getOp() == null || entry.getValue() == null) continue;
+                if (entry.getOp().equalsIgnoreCase("read")) blockRead += entry.getValue();
+                else if (entry.getOp().equalsIgnoreCase("write")) blockWrite += entry.getValue();
+            }
+        }
+
+        // Network and block I/O are counters since the container started, recorded as rates
+        if (lastTime >= 0 && now > lastTime) {
+            long elapsed = now - lastTime;
+            long rxRate = rate(netRx, lastNetRx, elapsed);
+            long txRate = rate(netTx, lastNetTx, elapsed);
+            long readRate = rate(blockRead, lastBlockRead, elapsed);
+            long writeRate = rate(blockWrite, lastBlockWrite, elapsed);
+            seconds.record(now, cpu, memory, rxRate, txRate, readRate, writeRate);
+            minutes.record(now, cpu, memory, rxRate, txRate, readRate, writeRate);
+        }
+        lastTime = now;
+        lastNetRx = netRx;
+        lastNetTx = netTx;
+        lastBlockRead = blockRead;
+        lastBlockWrite = blockWrite;
+    }
+
+    private static long rate(long current, long last, long elapsedMillis) {
+        return current < last ? 0 : (current - last) * 1000 / elapsedMillis;
+    }
+
+    private static double cpuPercent(CpuStatsConfig cpu, CpuStatsConfig previous) {
+        if (cpu == null || previous == null || cpu.getCpuUsage() == null || previous.getCpuUsage() == null
+                || cpu.getSystemCpuUsage() == null || previous.getSystemCpuUsage() == null
+                || cpu.getCpuUsage().getTotalUsage() == null || previous.getCpuUsage().getTotalUsage() == null)
+            return 0;
+
+        long cpuDelta = cpu.getCpuUsage().getTotalUsage() - previous.getCpuUsage().getTotalUsage();
+        long systemDelta = cpu.getSystemCpuUsage() - previous.getSystemCpuUsage();
+        if (cpuDelta <= 0 || systemDelta <= 0) return 0;
+
+        long cores = cpu.getOnlineCpus() != null ? cpu.getOnlineCpus()
+                : cpu.getCpuUsage().getPercpuUsage() != null ? cpu.getCpuUsage().getPercpuUsage().size() : 1;
+        return (double) cpuDelta / systemDelta * cores * 100;
+    }
+
+    /**
+     * @param window how far back to look, in milliseconds. Up to 10 minutes the per second history is used
+     */
+    public StatsSummary summarize(long window) {
+        long now = System.currentTimeMillis();
+        return window <= seconds.getWindow() ? seconds.summarize(now, window) : minutes.summarize(now, window);
+    }
+
+}
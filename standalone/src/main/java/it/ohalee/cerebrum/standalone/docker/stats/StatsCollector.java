@@ -0,0 +1,110 @@
+package it.ohalee.cerebrum.standalone.docker.stats;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Statistics;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.app.scheduler.SchedulerTask;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a stats stream open for every running container, on the stats client of its endpoint, and records
+ * the samples in a {@link ContainerStats} history.
+ * <p>
+ * Streams are reconciled with the registered containers every {@code sync} seconds: containers that started
+ * get a stream, streams of stopped containers are closed and histories of unregistered containers are dropped.
+ */
+public class StatsCollector {
+
+    private final boolean enabled;
+    private final long sync;
+    private final Supplier<Stream<ServerContainer>> servers;
+    private final Map<ServerContainer, ContainerStats> stats = new ConcurrentHashMap<>();
+    private final Map<ServerContainer, Closeable> streams = new ConcurrentHashMap<>();
+    private SchedulerTask task;
+
+    public StatsCollector(CerebrumConfigurationNode section, Supplier<Stream<ServerContainer>> servers) {
+        this.enabled = section.getBoolean("enabled", true);
+        this.sync = Math.max(1, section.getLong("sync", 5));
+        this.servers = servers;
+    }
+
+    public void start(CerebrumScheduler scheduler) {
+        if (!enabled) return;
+        task = scheduler.asyncRepeating(this::reconcile, sync, TimeUnit.SECONDS);
+    }
+
+    public void close() {
+        if (task != null)
+            task.cancel();
+        streams.keySet().forEach(this::unwatch);
+    }
+
+    public Optional<ContainerStats> getStats(ServerContainer server) {
+        return Optional.ofNullable(stats.get(server));
+    }
+
+    private void reconcile() {
+        Set<ServerContainer> registered = servers.get().collect(Collectors.toSet());
+        for (ServerContainer server : registered) {
+            if (server.isRunning() && !streams.containsKey(server))
+                watch(server);
+        }
+        for (ServerContainer server : streams.keySet()) {
+            if (!server.isRunning() || !registered.contains(server))
+                unwatch(server);
+        }
+        stats.keySet().retainAll(registered);
+    }
+
+    private void watch(ServerContainer server) {
+        ContainerStats history = stats.computeIfAbsent(server, unused -> new ContainerStats());
+        ResultCallback.Adapter<Statistics> callback = new ResultCallback.Adapter<>() {
+            @Override
+            public void onNext(Statistics statistics) {
+                history.accept(statistics);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                streams.remove(server, this);
+                super.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                streams.remove(server, this);
+                super.onComplete();
+            }
+        };
+        streams.put(server, callback);
+        try {
+            server.getEndpoint().getStatsClient().statsCmd(server.getName()).exec(callback);
+        } catch (RuntimeException e) {
+            streams.remove(server, callback);
+            Logger.warn("Could not open the stats stream of " + server.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void unwatch(ServerContainer server) {
+        Closeable stream = streams.remove(server);
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package it.ohalee.cerebrum.standalone.docker.stats;
+
+/**
+ * Fixed size history of container samples, one slot per {@code resolution} milliseconds.
+ * <p>
+ * Samples falling in the same slot are summed and averaged when read, slots skipped because no sample
+ * arrived stay empty. Everything is kept in primitive arrays allocated once, recording never allocates.
+ */
+public class StatsRing {
+
+    private final int capacity;
+    private final long resolution;
+    private final long[] slots;
+    private final int[] samples;
+    private final double[] cpu;
+    private final long[] memory;
+    private final long[] netRx;
+    private final long[] netTx;
+    private final long[] blockRead;
+    private final long[] blockWrite;
+    private int head = -1;
+
+    public StatsRing(int capacity, long resolution) {
+        this.capacity = capacity;
+        this.resolution = resolution;
+        this.slots = new long[capacity];
+        this.samples = new int[capacity];
+        this.cpu = new double[capacity];
+        this.memory = new long[capacity];
+        this.netRx = new long[capacity];
+        this.netTx = new long[capacity];
+        this.blockRead = new long[capacity];
+        this.blockWrite = new long[capacity];
+    }
+
+    /**
+     * @param time       when the sample was taken, in milliseconds
+     * @param cpu        CPU usage, 100 is one full core
+     * @param memory     memory usage in bytes
+     * @param netRx      bytes received per second
+     * @param netTx      bytes sent per second
+     * @param blockRead  bytes read per second
+     * @param blockWrite bytes written per second
+     */
+    public synchronized void record(long time, double cpu, long memory, long netRx, long netTx, long blockRead, long blockWrite) {
+        long slot = time / resolution;
+        if (head < 0 || slot > slots[head]) {
+            advance(slot);
+        } else if (slot < slots[head]) {
+            return; // Older than the current slot, dropped
+        }
+
+        samples[head]++;
+        this.cpu[head] += cpu;
+        this.memory[head] += memory;
+        this.netRx[head] += netRx;
+        this.netTx[head] += netTx;
+        this.blockRead[head] += blockRead;
+        this.blockWrite[head] += blockWrite;
+    }
+
+    private void advance(long slot) {
+        long skipped = head < 0 ? 1 : Math.min(capacity, slot - slots[head]);
+        for (long i = skipped - 1; i >= 0; i--) {
+            head = (head + 1) % capacity;
+            slots[head] = slot - i;
+            samples[head] = 0;
+            cpu[head] = 0;
+            memory[head] = 0;
+            netRx[head] = 0;
+            netTx[head] = 0;
+            blockRead[head] = 0;
+            blockWrite[head] = 0;
+        }
+    }
+
+    /**
+     * Averages and peaks of the slots within the last {@code window} milliseconds.
+     *
+     * @param now    the current time, in milliseconds
+     * @param window how far back to look, in milliseconds
+     * @return the summary, empty if no sample fell in the window
+     */
+    public synchronized StatsSummary summarize(long now, long window) {
+        StatsSummary summary = new StatsSummary();
+        if (head < 0) return summary;
+
+        long from = (now - window) / resolution;
+        for (int i = 0; i < capacity; i++) {
+            int index = Math.floorMod(head - i, capacity);
+            // Slots only go back in time from the head, unused ones are at 0
+            if (slots[index] <= from) break;
+            int count = samples[index];
+            if (count == 0) continue;
+            summary.add(cpu[index] / count, memory[index] / count, netRx[index] / count, netTx[index] / count,
+                    blockRead[index] / count, blockWrite[index] / count);
+        }
+        return summary;
+    }
+
+    public long getWindow() {
+        return capacity * resolution;
+    }
+
+}
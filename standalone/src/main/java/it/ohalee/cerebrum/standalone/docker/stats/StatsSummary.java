@@ -0,0 +1,80 @@
+package it.ohalee.cerebrum.standalone.docker.stats;
+
+import lombok.Getter;
+
+/**
+ * Averages and peaks over a window of a {@link StatsRing}, or the sum of several containers.
+ */
+@Getter
+public class StatsSummary {
+
+    private int slots;
+    private double cpu;
+    private double peakCpu;
+    private long memory;
+    private long peakMemory;
+    private long netRx;
+    private long netTx;
+    private long blockRead;
+    private long blockWrite;
+    // Sums of the slots, averaged on read
+    private double cpuSum;
+    private long memorySum;
+    private long netRxSum;
+    private long netTxSum;
+    private long blockReadSum;
+    private long blockWriteSum;
+
+    void add(double cpu, long memory, long netRx, long netTx, long blockRead, long blockWrite) {
+        slots++;
+        cpuSum += cpu;
+        memorySum += memory;
+        netRxSum += netRx;
+        netTxSum += netTx;
+        blockReadSum += blockRead;
+        blockWriteSum += blockWrite;
+        peakCpu = Math.max(peakCpu, cpu);
+        peakMemory = Math.max(peakMemory, memory);
+
+        this.cpu = cpuSum / slots;
+        this.memory = memorySum / slots;
+        this.netRx = netRxSum / slots;
+        this.netTx = netTxSum / slots;
+        this.blockRead = blockReadSum / slots;
+        this.blockWrite = blockWriteSum / slots;
+    }
+
+    /**
+     * Adds the averages of another container, peaks are summed too since they are per container.
+     */
+    public void merge(StatsSummary other) {
+        if (other.isEmpty()) return;
+        slots = Math.max(slots, other.slots);
+        cpu += other.cpu;
+        peakCpu += other.peakCpu;
+        memory += other.memory;
+        peakMemory += other.peakMemory;
+        netRx += other.netRx;
+        netTx += other.netTx;
+        blockRead += other.blockRead;
+        blockWrite += other.blockWrite;
+    }
+
+    public boolean isEmpty() {
+        return slots == 0;
+    }
+
+    public String format() {
+        if (isEmpty()) return "no samples";
+        return String.format("cpu %.1f%% (peak %.1f%%) mem %s (peak %s) net %s/s in %s/s out blk %s/s read %s/s write",
+                cpu, peakCpu, bytes(memory), bytes(peakMemory), bytes(netRx), bytes(netTx), bytes(blockRead), bytes(blockWrite));
+    }
+
+    static String bytes(long bytes) {
+        if (bytes < 1024) return bytes + "B";
+        if (bytes < 1024 * 1024) return String.format("%.1fK", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format("%.1fM", bytes / (1024.0 * 1024));
+        return String.format("%.2fG", bytes / (1024.0 * 1024 * 1024));
+    }
+
+}
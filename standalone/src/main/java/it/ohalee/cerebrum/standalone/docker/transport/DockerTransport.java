@@ -0,0 +1,106 @@
+package it.ohalee.cerebrum.standalone.docker.transport;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.core.DefaultDockerClientConfig;
+import com.github.dockerjava.core.DockerClientConfig;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.github.dockerjava.zerodep.ZerodepDockerHttpClient;
+import it.ohalee.cerebrum.app.Logger;
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Builds docker clients from the {@code cerebrum.docker} section of settings.yml, or from an endpoint section.
+ * <pre>
+ * docker:
+ *   host: "unix:///var/run/docker.sock"   # defaults to DOCKER_HOST
+ *   transport: httpclient5                # or zerodep
+ *   max-connections: 100
+ *   connect-timeout: 30                   # seconds
+ *   response-timeout: 45                  # seconds
+ *   keep-alive: true
+ *   streaming:                            # client used by events and logs, same keys
+ *     max-connections: 50
+ *     response-timeout: 0                 # 0 means no timeout
+ *   stats:                                # client holding one stats stream per running container, same keys
+ *     max-connections: 1000
+ *     response-timeout: 0
+ * </pre>
+ */
+public enum DockerTransport {
+
+    HTTPCLIENT5 {
+        @Override
+        DockerHttpClient build(DockerClientConfig config, int maxConnections, Duration connectTimeout, Duration responseTimeout) {
+            return new ApacheDockerHttpClient.Builder()
+                    .dockerHost(config.getDockerHost())
+                    .sslConfig(config.getSSLConfig())
+                    .maxConnections(maxConnections)
+                    .connectionTimeout(connectTimeout)
+                    .responseTimeout(responseTimeout)
+                    .build();
+        }
+    },
+    ZERODEP {
+        @Override
+        DockerHttpClient build(DockerClientConfig config, int maxConnections, Duration connectTimeout, Duration responseTimeout) {
+            return new ZerodepDockerHttpClient.Builder()
+                    .dockerHost(config.getDockerHost())
+                    .sslConfig(config.getSSLConfig())
+                    .maxConnections(maxConnections)
+                    .connectionTimeout(connectTimeout)
+                    .responseTimeout(responseTimeout)
+                    .build();
+        }
+    };
+
+    public static final String REQUEST_CLIENT = "request";
+    public static final String STREAMING_CLIENT = "streaming";
+    public static final String STATS_CLIENT = "stats";
+
+    abstract DockerHttpClient build(DockerClientConfig config, int maxConnections, Duration connectTimeout, Duration responseTimeout);
+
+    public static DockerTransport of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Logger.warn("Unknown docker transport '" + name + "', using httpclient5");
+            return HTTPCLIENT5;
+        }
+    }
+
+    /**
+     * @param section the docker section
+     * @param name     {@link #REQUEST_CLIENT}, {@link #STREAMING_CLIENT} or {@link #STATS_CLIENT}, the latter two read their overrides from their own subsection
+     * @param endpoint the name of the docker endpoint, metrics are registered under it
+     * @param metrics  where pool and endpoint metrics of the client are registered
+     */
+    public static DockerClient createClient(CerebrumConfigurationNode section, String name, String endpoint, MetricsRegistry metrics) {
+        boolean streaming = !name.equals(REQUEST_CLIENT);
+        String prefix = streaming ? name + "." : "";
+
+        DefaultDockerClientConfig.Builder configBuilder = DefaultDockerClientConfig.createDefaultConfigBuilder();
+        String host = section.getString("host", null);
+        if (host != null && !host.isEmpty())
+            configBuilder.withDockerHost(host);
+        DockerClientConfig dockerConfig = configBuilder.build();
+
+        DockerTransport transport = of(section.getString(prefix + "transport", section.getString("transport", "httpclient5")));
+        int maxConnections = section.getInteger(prefix + "max-connections", name.equals(STATS_CLIENT) ? 1000 : streaming ? 50 : section.getInteger("max-connections", 100));
+        long connectTimeout = section.getLong(prefix + "connect-timeout", section.getLong("connect-timeout", 30));
+        long responseTimeout = section.getLong(prefix + "response-timeout", streaming ? 0 : section.getLong("response-timeout", 45));
+        boolean keepAlive = section.getBoolean(prefix + "keep-alive", section.getBoolean("keep-alive", true));
+
+        DockerHttpClient httpClient = transport.build(dockerConfig, maxConnections, Duration.ofSeconds(connectTimeout),
+                responseTimeout <= 0 ? Duration.ZERO : Duration.ofSeconds(responseTimeout));
+        Logger.info("Docker " + name + " client of " + endpoint + ": " + transport.name().toLowerCase(Locale.ROOT) + " to " + dockerConfig.getDockerHost()
+                + " (" + maxConnections + " connections, keep-alive " + keepAlive + ")");
+        return DockerClientImpl.getInstance(dockerConfig, new InstrumentedDockerHttpClient(httpClient, endpoint + "." + name, metrics, maxConnections, keepAlive));
+    }
+
+}
@@ -0,0 +1,128 @@
+package it.ohalee.cerebrum.standalone.docker.transport;
+
+import com.github.dockerjava.transport.DockerHttpClient;
+import it.ohalee.cerebrum.standalone.metrics.Histogram;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps a transport to bound and measure its use: a request holds a permit until its response is closed,
+ * so the time spent waiting for a permit is the time spent waiting for a pooled connection.
+ */
+public class InstrumentedDockerHttpClient implements DockerHttpClient {
+
+    private static final Set<String> RESOURCES = Set.of("containers", "images", "networks", "volumes", "exec");
+    private static final Set<String> ACTIONS = Set.of("json", "create", "prune");
+
+    private final DockerHttpClient delegate;
+    private final String name;
+    private final MetricsRegistry metrics;
+    private final Semaphore permits;
+    private final boolean keepAlive;
+    private final Histogram waitTime;
+
+    public InstrumentedDockerHttpClient(DockerHttpClient delegate, String name, MetricsRegistry metrics, int maxConnections, boolean keepAlive) {
+        this.delegate = delegate;
+        this.name = name;
+        this.metrics = metrics;
+        this.permits = new Semaphore(maxConnections, true);
+        this.keepAlive = keepAlive;
+        this.waitTime = metrics.histogram("docker." + name + ".pool.wait");
+
+        metrics.gauge("docker." + name + ".pool.max", () -> maxConnections);
+        metrics.gauge("docker." + name + ".pool.in-use", () -> maxConnections - permits.availablePermits());
+        metrics.gauge("docker." + name + ".pool.waiting", permits::getQueueLength);
+    }
+
+    /**
+     * Reduces a request path to its endpoint, e.g. {@code /v1.41/containers/abc/start?t=10} to {@code /containers/{id}/start}.
+     */
+    static String endpoint(String path) {
+        int query = path.indexOf('?');
+        if (query != -1) path = path.substring(0, query);
+
+        StringBuilder builder = new StringBuilder();
+        boolean identifier = false;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || (builder.length() == 0 && segment.matches("v\\d+(\\.\\d+)?"))) continue;
+            builder.append('/').append(identifier && !ACTIONS.contains(segment) ? "{id}" : segment);
+            identifier = RESOURCES.contains(segment);
+        }
+        return builder.length() == 0 ? "/" : builder.toString();
+    }
+
+    @Override
+    public Response execute(Request request) {
+        long waitStart = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a docker connection", e);
+        }
+        waitTime.recordNanos(waitStart);
+
+        String endpoint = request.method() + " " + endpoint(request.path());
+        long start = System.nanoTime();
+        try {
+            Response response = delegate.execute(keepAlive ? request : DockerHttpClient.Request.builder()
+                    .from(request)
+                    .putHeaders("Connection", "close")
+                    .build());
+            metrics.histogram("docker." + name + ".endpoint." + endpoint).recordNanos(start);
+            return new TrackedResponse(response);
+        } catch (RuntimeException e) {
+            permits.release();
+            metrics.counter("docker." + name + ".errors").increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private final class TrackedResponse implements Response {
+
+        private final Response delegate;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private TrackedResponse(Response delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (closed.compareAndSet(false, true))
+                    permits.release();
+            }
+        }
+    }
+
+}
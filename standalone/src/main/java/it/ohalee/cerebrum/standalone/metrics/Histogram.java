@@ -0,0 +1,72 @@
+package it.ohalee.cerebrum.standalone.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, cheap enough to be recorded on every call.
+ * Percentiles are approximated by the upper bound of the bucket they fall in.
+ */
+public class Histogram {
+
+    private static final long[] BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+            250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000, Long.MAX_VALUE
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        long micros = unit.toMicros(duration);
+        int bucket = 0;
+        while (micros > BOUNDS_MICROS[bucket]) bucket++;
+        buckets[bucket].increment();
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    public void recordNanos(long startNanos) {
+        record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the approximated percentile, in milliseconds
+     */
+    public double percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank)
+                return (i == buckets.length - 1 ? max.get() : BOUNDS_MICROS[i]) / 1000D;
+        }
+        return max.get() / 1000D;
+    }
+
+    public String summary() {
+        long total = count.sum();
+        if (total == 0) return "count=0";
+        return String.format("count=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                total, sum.sum() / 1000D / total, percentile(0.5), percentile(0.95), percentile(0.99), max.get() / 1000D);
+    }
+
+}
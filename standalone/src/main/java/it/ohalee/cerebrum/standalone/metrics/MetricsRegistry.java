@@ -0,0 +1,43 @@
+package it.ohalee.cerebrum.standalone.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics of this Cerebrum node, shown by the {@code metrics} command.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public String format(String filter) {
+        Map<String, String> lines = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> lines.put(name, String.valueOf(counter.get())));
+        gauges.forEach((name, gauge) -> lines.put(name, String.valueOf(gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> lines.put(name, histogram.summary()));
+
+        StringBuilder builder = new StringBuilder("\n");
+        lines.forEach((name, value) -> {
+            if (filter == null || name.startsWith(filter))
+                builder.append("  ").append(name).append(": ").append(value).append("\n");
+        });
+        return builder.toString();
+    }
+
+}
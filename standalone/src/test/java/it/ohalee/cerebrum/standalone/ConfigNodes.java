@@ -0,0 +1,23 @@
+package it.ohalee.cerebrum.standalone;
+
+import it.ohalee.cerebrum.standalone.config.CerebrumConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+
+/**
+ * Builds configuration sections for tests.
+ */
+public final class ConfigNodes {
+
+    private ConfigNodes() {
+    }
+
+    /**
+     * @param entries keys followed by their values, keys may be dotted paths
+     */
+    public static CerebrumConfigurationNode of(Object... entries) {
+        SimpleConfigurationNode root = SimpleConfigurationNode.root();
+        for (int i = 0; i < entries.length; i += 2)
+            root.getNode((Object[]) entries[i].toString().split("\\.")).setValue(entries[i + 1]);
+        return CerebrumConfigurationNode.of(root);
+    }
+}
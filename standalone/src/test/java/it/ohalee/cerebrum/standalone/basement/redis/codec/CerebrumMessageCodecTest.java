@@ -0,0 +1,72 @@
+package it.ohalee.cerebrum.standalone.basement.redis.codec;
+
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServerMessage;
+import it.ohalee.cerebrum.standalone.basement.redis.message.StartServersMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CerebrumMessageCodecTest {
+
+    private static final UUID SENDER = UUID.randomUUID();
+
+    @Test
+    void roundTripsStartServer() throws IOException {
+        byte[] data = CerebrumMessageCodec.encode(new StartServerMessage(SENDER, "bedwars", "lobby-1", "retry-7"));
+
+        StartServerMessage decoded = assertInstanceOf(StartServerMessage.class, CerebrumMessageCodec.decode(data));
+        assertEquals(SENDER, decoded.getUuid());
+        assertEquals("bedwars", decoded.getRanchName());
+        assertEquals("lobby-1", decoded.getServerName());
+        assertEquals("retry-7", decoded.getIdempotencyKey());
+    }
+
+    @Test
+    void roundTripsStartServersWithoutKey() throws IOException {
+        List<String> servers = List.of("bedwars-lobby-1", "bedwars-instance", "bedwars-instance", "skywars-lobby-é");
+        byte[] data = CerebrumMessageCodec.encode(new StartServersMessage(SENDER, servers, null));
+
+        StartServersMessage decoded = assertInstanceOf(StartServersMessage.class, CerebrumMessageCodec.decode(data));
+        assertEquals(SENDER, decoded.getUuid());
+        assertEquals(servers, decoded.getServers());
+        assertNull(decoded.getIdempotencyKey());
+    }
+
+    @Test
+    void readsSenderAndVersionFromHeader() {
+        byte[] data = CerebrumMessageCodec.encode(new StartServerMessage(SENDER, "bedwars", "lobby-1", null));
+
+        assertTrue(CerebrumMessageCodec.isSupported(data));
+        assertTrue(CerebrumMessageCodec.isFrom(data, SENDER));
+        assertFalse(CerebrumMessageCodec.isFrom(data, UUID.randomUUID()));
+
+        data[0] = CerebrumMessageCodec.VERSION + 1;
+        assertFalse(CerebrumMessageCodec.isSupported(data));
+        assertFalse(CerebrumMessageCodec.isSupported(new byte[4]));
+    }
+
+    @Test
+    void rejectsCorruptServerCounts() {
+        byte[] data = CerebrumMessageCodec.encode(new StartServersMessage(SENDER, List.of("bedwars-lobby-1"), null));
+        // The count follows the 18 bytes of header
+        ByteBuffer.wrap(data).putInt(18, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CerebrumMessageCodec.decode(data));
+
+        ByteBuffer.wrap(data).putInt(18, -1);
+        assertThrows(IOException.class, () -> CerebrumMessageCodec.decode(data));
+    }
+
+    @Test
+    void rejectsTruncatedMessages() {
+        byte[] data = CerebrumMessageCodec.encode(new StartServerMessage(SENDER, "bedwars", "lobby-1", "retry-7"));
+
+        assertThrows(IOException.class, () -> CerebrumMessageCodec.decode(Arrays.copyOf(data, data.length - 3)));
+    }
+
+}
@@ -0,0 +1,51 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import java.util.function.LongSupplier;
+
+/**
+ * {@link LeaseStore} in memory with the semantics of {@link RedisLeaseStore}, on a clock driven by the test.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+
+    private final LongSupplier clock;
+    private String holder;
+    private long token = -1;
+    private long expiresAt;
+    private long lastToken;
+
+    /**
+     * @param clock current time in milliseconds
+     */
+    public InMemoryLeaseStore(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized long tryAcquire(String holder, long ttlMillis) {
+        long now = clock.getAsLong();
+        if (this.holder != null && now < expiresAt) {
+            if (!this.holder.equals(holder)) return -1;
+            expiresAt = now + ttlMillis;
+            return token;
+        }
+
+        this.holder = holder;
+        this.token = ++lastToken;
+        this.expiresAt = now + ttlMillis;
+        return token;
+    }
+
+    @Override
+    public synchronized boolean renew(String holder, long token, long ttlMillis) {
+        long now = clock.getAsLong();
+        if (!holder.equals(this.holder) || token != this.token || now >= expiresAt) return false;
+        expiresAt = now + ttlMillis;
+        return true;
+    }
+
+    @Override
+    public synchronized void release(String holder, long token) {
+        if (holder.equals(this.holder) && token == this.token)
+            this.holder = null;
+    }
+}
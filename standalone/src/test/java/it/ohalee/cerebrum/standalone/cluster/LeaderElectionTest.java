@@ -0,0 +1,155 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.standalone.ConfigNodes;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderElectionTest {
+
+    private static final long LEASE_MILLIS = 60_000;
+
+    private final AtomicLong storeClock = new AtomicLong();
+    private final AtomicLong nodeClock = new AtomicLong();
+    private LeaseStore store;
+    private CerebrumScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryLeaseStore(storeClock::get);
+        scheduler = new CerebrumScheduler();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownScheduler();
+        scheduler.shutdownExecutor();
+    }
+
+    private LeaderElection node(String nodeId, AtomicInteger elected, AtomicInteger revoked) {
+        // Renewals are driven by the test, the scheduled ones would only come after the test is over
+        LeaderElection election = new LeaderElection(
+                ConfigNodes.of("enabled", true, "lease-time", TimeUnit.MILLISECONDS.toSeconds(LEASE_MILLIS), "renew-interval", LEASE_MILLIS / 3),
+                true, nodeId, () -> store, new MetricsRegistry(), elected::incrementAndGet, revoked::incrementAndGet, nodeClock::get);
+        election.start(scheduler);
+        return election;
+    }
+
+    @Test
+    void firstNodeAcquiresAndRenews() {
+        AtomicInteger elected = new AtomicInteger();
+        AtomicInteger revoked = new AtomicInteger();
+        LeaderElection a = node("a", elected, revoked);
+
+        assertTrue(a.isLeader());
+        long token = a.getToken();
+        assertTrue(token > 0);
+
+        storeClock.addAndGet(LEASE_MILLIS / 2);
+        a.tick();
+        storeClock.addAndGet(LEASE_MILLIS / 2);
+        a.tick();
+
+        assertTrue(a.holds(token));
+        assertEquals(1, elected.get());
+        assertEquals(0, revoked.get());
+    }
+
+    @Test
+    void standbyWaitsWhileTheLeaseIsHeld() {
+        LeaderElection a = node("a", new AtomicInteger(), new AtomicInteger());
+        LeaderElection b = node("b", new AtomicInteger(), new AtomicInteger());
+
+        assertTrue(a.isLeader());
+        assertFalse(b.isLeader());
+        storeClock.addAndGet(LEASE_MILLIS / 2);
+        b.tick();
+        assertFalse(b.isLeader());
+    }
+
+    @Test
+    void standbyTakesOverAnExpiredLeaseWithAGreaterToken() {
+        AtomicInteger revokedA = new AtomicInteger();
+        LeaderElection a = node("a", new AtomicInteger(), revokedA);
+        LeaderElection b = node("b", new AtomicInteger(), new AtomicInteger());
+        long tokenA = a.getToken();
+
+        // The leader stops renewing, e.g. it froze or lost Redis
+        storeClock.addAndGet(LEASE_MILLIS + 1);
+        b.tick();
+
+        assertTrue(b.isLeader());
+        assertTrue(b.getToken() > tokenA);
+
+        // Back again, the old leader learns it lost the lease and its token no longer passes the fencing check
+        a.tick();
+        assertFalse(a.isLeader());
+        assertFalse(a.holds(tokenA));
+        assertEquals(1, revokedA.get());
+    }
+
+    @Test
+    void leaderStepsDownWhenItCannotRenewInTime() {
+        AtomicBoolean down = new AtomicBoolean();
+        LeaseStore reachable = store;
+        store = new LeaseStore() {
+            @Override
+            public long tryAcquire(String holder, long ttlMillis) {
+                check();
+                return reachable.tryAcquire(holder, ttlMillis);
+            }
+
+            @Override
+            public boolean renew(String holder, long token, long ttlMillis) {
+                check();
+                return reachable.renew(holder, token, ttlMillis);
+            }
+
+            @Override
+            public void release(String holder, long token) {
+                reachable.release(holder, token);
+            }
+
+            private void check() {
+                if (down.get()) throw new IllegalStateException("Redis is down");
+            }
+        };
+        AtomicInteger revoked = new AtomicInteger();
+        LeaderElection a = node("a", new AtomicInteger(), revoked);
+        long token = a.getToken();
+
+        // A failed renewal alone is not enough, the lease cannot have expired yet
+        down.set(true);
+        nodeClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS / 3));
+        a.tick();
+        assertTrue(a.holds(token));
+
+        // Past the point where the lease may have expired in the store, before anyone else can acquire it
+        nodeClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS / 3));
+        assertFalse(a.isLeader());
+        a.tick();
+        assertEquals(1, revoked.get());
+        assertEquals(-1, a.getToken());
+    }
+
+    @Test
+    void releaseLetsAStandbyTakeOverImmediately() {
+        LeaderElection a = node("a", new AtomicInteger(), new AtomicInteger());
+        LeaderElection b = node("b", new AtomicInteger(), new AtomicInteger());
+
+        a.stop();
+        b.tick();
+
+        assertFalse(a.isLeader());
+        assertTrue(b.isLeader());
+    }
+}
@@ -0,0 +1,111 @@
+package it.ohalee.cerebrum.standalone.cluster;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the lease scripts on an embedded Redis, {@link LeaderElectionTest} only covers the election on top of them.
+ */
+class RedisLeaseStoreTest {
+
+    private static final long TTL = 60_000;
+
+    private static RedisServer server;
+    private static RedissonClient redisson;
+    private String name;
+    private RedisLeaseStore store;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new RedisServer(port);
+        server.start();
+
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + port);
+        redisson = Redisson.create(config);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redisson != null)
+            redisson.shutdown();
+        if (server != null)
+            server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        name = "cerebrum:test:" + UUID.randomUUID();
+        store = new RedisLeaseStore(redisson, name);
+    }
+
+    @Test
+    void acquiresFreeLeaseAndKeepsTokenForHolder() {
+        long token = store.tryAcquire("a", TTL);
+
+        assertTrue(token > 0);
+        assertEquals(token, store.tryAcquire("a", TTL));
+        assertEquals(-1, store.tryAcquire("b", TTL));
+        assertEquals("a:" + token, lease().get());
+    }
+
+    @Test
+    void expiresWithPxAndHandsOutGreaterTokens() throws InterruptedException {
+        long first = store.tryAcquire("a", 100);
+        long remaining = lease().remainTimeToLive();
+        assertTrue(remaining > 0 && remaining <= 100, "lease ttl " + remaining);
+
+        Thread.sleep(250);
+        long second = store.tryAcquire("b", TTL);
+
+        assertTrue(second > first);
+        assertFalse(store.renew("a", first, TTL));
+    }
+
+    @Test
+    void renewsOnlyWithTheCurrentToken() {
+        long token = store.tryAcquire("a", 1_000);
+
+        assertFalse(store.renew("a", token + 1, TTL));
+        assertFalse(store.renew("b", token, TTL));
+        assertTrue(lease().remainTimeToLive() <= 1_000);
+
+        assertTrue(store.renew("a", token, TTL));
+        assertTrue(lease().remainTimeToLive() > 1_000);
+    }
+
+    @Test
+    void releasesOnlyWithTheCurrentToken() {
+        long token = store.tryAcquire("a", TTL);
+
+        store.release("a", token - 1);
+        store.release("b", token);
+        assertEquals(-1, store.tryAcquire("b", TTL));
+
+        store.release("a", token);
+        assertTrue(store.tryAcquire("b", TTL) > token);
+    }
+
+    private RBucket<String> lease() {
+        return redisson.getBucket(name + ":lease", StringCodec.INSTANCE);
+    }
+
+}
@@ -0,0 +1,173 @@
+package it.ohalee.cerebrum.standalone.docker.probe;
+
+import it.ohalee.cerebrum.app.scheduler.CerebrumScheduler;
+import it.ohalee.cerebrum.standalone.ConfigNodes;
+import it.ohalee.cerebrum.standalone.docker.container.ServerContainer;
+import it.ohalee.cerebrum.standalone.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusProberTest {
+
+    private CerebrumScheduler scheduler;
+    private StatusProber prober;
+    private ServerSocket socket;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scheduler = new CerebrumScheduler();
+        // Probes are queued by the tests, the scheduled round only looks at the (empty) fleet
+        prober = new StatusProber(ConfigNodes.of("interval", 3600, "timeout", 1), new MetricsRegistry(), Stream::empty);
+        prober.start(scheduler);
+        socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        prober.close();
+        socket.close();
+        scheduler.shutdownScheduler();
+        scheduler.shutdownExecutor();
+    }
+
+    @Test
+    void readsOnlineAndMaxPlayers() throws Exception {
+        serve(status(12, 100, "a lobby"), Integer.MAX_VALUE);
+
+        ProbeResult result = probe(address());
+
+        assertTrue(result.isSuccess(), result.getError());
+        assertEquals(12, result.getOnline());
+        assertEquals(100, result.getMax());
+    }
+
+    @Test
+    void readsResponsesSentInPieces() throws Exception {
+        // Larger than the initial buffer and written a few bytes at a time
+        serve(status(3, 50, "x".repeat(4096)), 7);
+
+        ProbeResult result = probe(address());
+
+        assertTrue(result.isSuccess(), result.getError());
+        assertEquals(3, result.getOnline());
+        assertEquals(50, result.getMax());
+    }
+
+    @Test
+    void failsServersThatNeverAnswer() throws Exception {
+        serve(null, 0);
+
+        ProbeResult result = probe(address());
+
+        assertFalse(result.isSuccess());
+        assertEquals("timed out", result.getError());
+    }
+
+    @Test
+    void failsUnresolvedAddresses() throws Exception {
+        ServerContainer server = new ServerContainer("unresolved", "unresolved", ServerContainer.Type.WORKER);
+        InetSocketAddress address = InetSocketAddress.createUnresolved("cerebrum.invalid", 25565);
+
+        ProbeResult result = probe(server, address);
+        assertFalse(result.isSuccess());
+
+        // The failed probe must not stay in flight, or the server would never be pinged again
+        server.setLastProbe(null);
+        assertFalse(probe(server, address).isSuccess());
+    }
+
+    private InetSocketAddress address() {
+        return new InetSocketAddress(socket.getInetAddress(), socket.getLocalPort());
+    }
+
+    private ProbeResult probe(InetSocketAddress address) throws InterruptedException {
+        return probe(new ServerContainer("lobby-1", "lobby", ServerContainer.Type.WORKER), address);
+    }
+
+    private ProbeResult probe(ServerContainer server, InetSocketAddress address) throws InterruptedException {
+        prober.probe(server, address);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getLastProbe() == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "no probe result");
+            Thread.sleep(10);
+        }
+        return server.getLastProbe();
+    }
+
+    /**
+     * Accepts one connection, reads the handshake and the status request and answers with {@code response} in
+     * chunks of {@code chunk} bytes, or never answers if it is null.
+     */
+    private void serve(byte[] response, int chunk) {
+        Thread thread = new Thread(() -> {
+            try (Socket client = socket.accept()) {
+                DataInputStream in = new DataInputStream(client.getInputStream());
+                in.readFully(new byte[readVarInt(in)]);
+                in.readFully(new byte[readVarInt(in)]);
+                if (response == null) {
+                    in.read();
+                    return;
+                }
+                OutputStream out = client.getOutputStream();
+                for (int i = 0; i < response.length; i += chunk) {
+                    out.write(response, i, Math.min(chunk, response.length - i));
+                    out.flush();
+                    if (chunk < response.length) Thread.sleep(1);
+                }
+                in.read();
+            } catch (IOException | InterruptedException ignored) {
+            }
+        }, "fake-slp-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static byte[] status(int online, int max, String motd) {
+        byte[] json = ("{\"version\":{\"name\":\"1.20.1\",\"protocol\":763},\"players\":{\"max\":" + max + ",\"online\":" + online
+                + "},\"description\":{\"text\":\"" + motd + "\"}}").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        writeVarInt(packet, 0x00);
+        writeVarInt(packet, json.length);
+        packet.writeBytes(json);
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        writeVarInt(framed, packet.size());
+        framed.writeBytes(packet.toByteArray());
+        return framed.toByteArray();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            int current = in.read();
+            if (current < 0) throw new IOException("connection closed");
+            value |= (current & 0x7F) << (7 * i);
+            if ((current & 0x80) == 0) return value;
+        }
+        throw new IOException("VarInt too big");
+    }
+
+}